@@ -0,0 +1,256 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.vaadin.data.Property.ValueChangeEvent;
+import com.vaadin.data.Property.ValueChangeListener;
+import com.vaadin.server.ServiceDestroyEvent;
+import com.vaadin.server.ServiceDestroyListener;
+import com.vaadin.server.VaadinService;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+/**
+ * Delivers the value changes of a calendar to an
+ * {@link AsyncValueChangeListener} on an executor. At most one value per
+ * listener is processed at a time and values which change while one is
+ * processed are coalesced into the latest value.
+ * 
+ * @author John Ahlroos (www.jasoft.fi)
+ * 
+ */
+@SuppressWarnings("serial")
+final class AsyncValueChangeDispatcher<T> implements ValueChangeListener,
+        Runnable {
+
+    // Tasks waiting for a thread in the default executor, each listener has
+    // at most one task queued
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private static ThreadPoolExecutor defaultExecutor;
+
+    private final AsyncValueChangeListener<T> listener;
+
+    // Not serializable, the default executor is used after deserialization
+    private transient Executor executor;
+
+    // The latest value which has not been processed, guarded by this
+    private transient Object pendingValue;
+    private transient UI pendingUI;
+    private transient boolean pending;
+
+    // Increased on each value change, results of older values are not applied
+    private transient int version;
+
+    private transient boolean running;
+
+    AsyncValueChangeDispatcher(AsyncValueChangeListener<T> listener,
+            Executor executor) {
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the shared bounded executor used when no executor is given,
+     * with a daemon thread per processor. The executor is shut down when the
+     * service it was created for is destroyed and created again if needed.
+     */
+    static synchronized Executor getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads,
+                    threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+                    new ThreadFactory() {
+
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable task) {
+                            Thread thread = new Thread(task,
+                                    "SimpleCalendar-listener-"
+                                            + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            defaultExecutor = pool;
+
+            VaadinService service = VaadinService.getCurrent();
+            if (service != null) {
+                service.addServiceDestroyListener(new ServiceDestroyListener() {
+
+                    @Override
+                    public void serviceDestroy(ServiceDestroyEvent event) {
+                        shutdownDefaultExecutor();
+                    }
+                });
+            }
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Shuts down the default executor after the values already submitted to
+     * it have been processed
+     */
+    static synchronized void shutdownDefaultExecutor() {
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdown();
+            defaultExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the listener the changes are delivered to
+     */
+    AsyncValueChangeListener<T> getListener() {
+        return listener;
+    }
+
+    @Override
+    public void valueChange(ValueChangeEvent event) {
+        SimpleCalendar calendar = (SimpleCalendar) event.getProperty();
+        UI ui = calendar.getUI();
+        if (ui == null) {
+            // Nothing to apply the result to
+            return;
+        }
+        Object value = snapshot(calendar.getValue());
+        boolean submit;
+        synchronized (this) {
+            pendingValue = value;
+            pendingUI = ui;
+            pending = true;
+            version++;
+            submit = !running;
+            running = true;
+        }
+        if (submit) {
+            try {
+                (executor == null ? getDefaultExecutor() : executor)
+                        .execute(this);
+            } catch (RejectedExecutionException e) {
+                // Process the value in this thread instead of dropping it
+                run();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean completed = false;
+        try {
+            processPendingValues();
+            completed = true;
+        } finally {
+            if (!completed) {
+                synchronized (this) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private void processPendingValues() {
+        while (true) {
+            Object value;
+            UI ui;
+            final int processedVersion;
+            synchronized (this) {
+                if (!pending) {
+                    running = false;
+                    return;
+                }
+                value = pendingValue;
+                ui = pendingUI;
+                processedVersion = version;
+                pending = false;
+                pendingValue = null;
+                pendingUI = null;
+            }
+            T processed = null;
+            RuntimeException failure = null;
+            try {
+                processed = listener.process(value);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            final T result = processed;
+            final RuntimeException error = failure;
+            try {
+                ui.access(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (error != null) {
+                            // Let the error handler of the session handle it
+                            throw error;
+                        }
+                        if (isLatest(processedVersion)) {
+                            listener.apply(result);
+                        }
+                    }
+                });
+            } catch (UIDetachedException e) {
+                // The UI has been closed, the result is not needed
+            } catch (RuntimeException e) {
+                // Keep processing the values changed since
+                getLogger().log(Level.WARNING,
+                        "Could not apply the result of " + listener, e);
+            }
+        }
+    }
+
+    private static Logger getLogger() {
+        return Logger.getLogger(AsyncValueChangeDispatcher.class.getName());
+    }
+
+    private synchronized boolean isLatest(int processedVersion) {
+        return version == processedVersion;
+    }
+
+    /**
+     * Copies a mutable value so that it can be processed in another thread
+     */
+    @SuppressWarnings("unchecked")
+    private static Object snapshot(Object value) {
+        if (value instanceof DateRangeSet) {
+            return value;
+        } else if (value instanceof Collection) {
+            return Collections.unmodifiableSet(new LinkedHashSet<Date>(
+                    (Collection<Date>) value));
+        } else if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        return value;
+    }
+}
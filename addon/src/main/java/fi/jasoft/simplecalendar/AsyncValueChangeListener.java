@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.Serializable;
+
+/**
+ * Listens to value changes of a {@link SimpleCalendar} outside of the session
+ * lock, see
+ * {@link SimpleCalendar#addAsyncValueChangeListener(AsyncValueChangeListener)}
+ * . When values change faster than they are processed only the latest value
+ * is processed.
+ * 
+ * @param <T>
+ *            The type of the result of processing a value
+ * 
+ * @author John Ahlroos (www.jasoft.fi)
+ * 
+ */
+public interface AsyncValueChangeListener<T> extends Serializable {
+
+    /**
+     * Processes a new value of the calendar. Called in a background thread
+     * without the session lock, the calendar or other components must not be
+     * accessed.
+     * 
+     * @param value
+     *            The new value, a set of dates in multiselect mode and a date
+     *            otherwise. The value must not be modified.
+     * @return The result which is passed to {@link #apply(Object)}
+     */
+    public T process(Object value);
+
+    /**
+     * Applies the result of processing a value to the UI. Called with the
+     * session locked through {@link com.vaadin.ui.UI#access(Runnable)}, but
+     * only if the value of the calendar has not changed again after it was
+     * processed.
+     * 
+     * @param result
+     *            The result returned by {@link #process(Object)}
+     */
+    public void apply(T result);
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+/**
+ * Receives measurements from all {@link SimpleCalendar}s of the JVM, see
+ * {@link SimpleCalendar#setMetrics(CalendarMetrics)}. Methods are called from
+ * any thread holding a session lock and must be thread safe and fast.
+ * {@link JmxCalendarMetrics} publishes the measurements through JMX.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public interface CalendarMetrics {
+
+    /**
+     * Called when a calendar is attached to a UI
+     */
+    void calendarAttached();
+
+    /**
+     * Called when a calendar is detached from a UI
+     */
+    void calendarDetached();
+
+    /**
+     * Called when a calendar receives an RPC call from the client
+     *
+     * @param method
+     *            The name of the called RPC method
+     */
+    void rpcReceived(String method);
+
+    /**
+     * Called when a value set on the server has been validated
+     *
+     * @param nanos
+     *            The time the validation took in nanoseconds
+     * @param rejectedDates
+     *            The amount of dates which did not pass validation
+     */
+    void valueValidated(long nanos, int rejectedDates);
+
+    /**
+     * Called when the state of a calendar is sent to the client
+     *
+     * @param bytes
+     *            The length of the sent JSON, the changes since the previous
+     *            response or the complete state in the initial response
+     */
+    void stateSent(int bytes);
+}
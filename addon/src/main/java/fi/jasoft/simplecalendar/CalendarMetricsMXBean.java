@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link JmxCalendarMetrics}
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public interface CalendarMetricsMXBean {
+
+    /**
+     * Returns the amount of calendars attached to a UI
+     */
+    int getLiveCalendars();
+
+    /**
+     * Returns the amount of received RPC calls by method name
+     */
+    Map<String, Long> getRpcCounts();
+
+    /**
+     * Returns the amount of validated values
+     */
+    long getValidationCount();
+
+    /**
+     * Returns the mean validation time in microseconds
+     */
+    double getValidationMeanMicros();
+
+    /**
+     * Returns the median validation time in microseconds, accurate to a
+     * power of two
+     */
+    long getValidation50thPercentileMicros();
+
+    /**
+     * Returns the 99th percentile of the validation time in microseconds,
+     * accurate to a power of two
+     */
+    long getValidation99thPercentileMicros();
+
+    /**
+     * Returns the amount of validated values in each latency bucket. Bucket n
+     * counts validations which took less than 2^n microseconds and at least
+     * as long as the previous bucket.
+     */
+    long[] getValidationHistogram();
+
+    /**
+     * Returns the amount of dates rejected by validation
+     */
+    long getRejectedDates();
+
+    /**
+     * Returns the amount of state responses
+     */
+    long getStateResponses();
+
+    /**
+     * Returns the total length of the sent states in bytes
+     */
+    long getStateBytes();
+
+    /**
+     * Returns the length of the largest sent state in bytes
+     */
+    int getMaxStateBytes();
+
+    /**
+     * Resets all counters except the live calendars
+     */
+    void reset();
+}
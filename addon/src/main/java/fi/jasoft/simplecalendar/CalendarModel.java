@@ -0,0 +1,889 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import fi.jasoft.simplecalendar.DateValidationResult.Reason;
+import fi.jasoft.simplecalendar.DateValidationResult.RejectedDate;
+import fi.jasoft.simplecalendar.shared.Day;
+import fi.jasoft.simplecalendar.shared.RecurrenceRule;
+import fi.jasoft.simplecalendar.shared.RecurrenceRuleSet;
+import fi.jasoft.simplecalendar.shared.Weekday;
+
+/**
+ * The selection, disabled date rules and displayed month of a calendar
+ * without any dependency on Vaadin. {@link SimpleCalendar} delegates its
+ * validation and selection logic to a model, and a model can be used on its
+ * own, for example to simulate user interaction in a load test.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public class CalendarModel implements Serializable {
+
+    private final TimeZone timeZone;
+
+    private Object value;
+
+    private boolean multiselect = false;
+
+    private boolean rangeCompressedValue = false;
+
+    private Date startDate;
+
+    private Date endDate;
+
+    private CalendarRules calendarRules = CalendarRules.EMPTY;
+
+    private List<Weekday> disabledWeekdays = Collections.emptyList();
+
+    private List<Integer> disabledMonthdays = Collections.emptyList();
+
+    // Serialized with CompactSerialization
+    private transient List<Date> disabledDates = new ArrayList<Date>();
+
+    private List<RecurrenceRule> disabledRecurrenceRules = Collections
+            .emptyList();
+
+    private DisabledDateProviderCache disabledDateProviderCache;
+
+    private transient DisabledDateIndex disabledDateIndex;
+
+    private transient RecurrenceRuleSet recurrenceRuleSet;
+
+    // The displayed month as year * 12 + month
+    private int displayedMonth;
+
+    /**
+     * Creates a model which resolves dates to days in the default time zone
+     */
+    public CalendarModel() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * Creates a model
+     *
+     * @param timeZone
+     *            The time zone dates are resolved to days in
+     */
+    public CalendarModel(TimeZone timeZone) {
+        this.timeZone = timeZone;
+        this.displayedMonth = Day.getMonthKey(EpochDayUtil.toEpochDay(
+                new Date(), timeZone));
+    }
+
+    /**
+     * Returns the time zone dates are resolved to days in
+     */
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /*
+     * Selection
+     */
+
+    /**
+     * Returns a java.util.Set of Dates if in multiselect mode else a single
+     * Date or null if no date has been selected
+     */
+    public Object getValue() {
+        if (multiselect && value == null) {
+            if (rangeCompressedValue) {
+                return DateRangeSet.empty(timeZone);
+            }
+            return Collections.EMPTY_SET;
+        }
+        return value;
+    }
+
+    /**
+     * Sets the selected date or dates, see {@link #checkValue(Object)}
+     */
+    public void setValue(Object newValue) {
+        value = checkValue(newValue);
+    }
+
+    /**
+     * Sets the value without validating it
+     */
+    void setValueUnchecked(Object newValue) {
+        value = newValue;
+    }
+
+    /**
+     * Validates a new value and converts it to the value type of the current
+     * mode. If multiselect mode is set then the value should be a collection
+     * of dates, if not in multiselect mode it should be a Date. If a
+     * collection contains invalid dates an {@link InvalidDatesException}
+     * listing all of them is thrown.
+     *
+     * @param newValue
+     *            The value to check
+     * @return The value to set
+     */
+    @SuppressWarnings("unchecked")
+    public Object checkValue(Object newValue) {
+        if (newValue == null) {
+            return null;
+        } else if (newValue instanceof Date) {
+            if (isDateDisabled((Date) newValue)) {
+                throw new IllegalArgumentException("Date has been disabled");
+            } else if (!isDateInRange((Date) newValue)) {
+                throw new IllegalArgumentException(
+                        "Date is outside of start or end date");
+            }
+            return multiselect ? toValue(Collections.singleton((Date) newValue))
+                    : newValue;
+        } else if (newValue instanceof Collection<?> && multiselect) {
+            DateValidationResult result = validateDates((Collection<Date>) newValue);
+            if (!result.isValid()) {
+                throw new InvalidDatesException(result);
+            }
+            return toValue((Collection<Date>) newValue);
+        }
+        throw new IllegalArgumentException(
+                "The value must be a Date or a collection of dates if multiselect.");
+    }
+
+    /**
+     * Sets the dates of the collection which pass validation as the value and
+     * returns the dates which did not. Only available in multiselect mode.
+     *
+     * @param dates
+     *            The dates to select
+     * @return The validation result of the dates
+     */
+    public DateValidationResult setValidDates(Collection<Date> dates) {
+        if (!multiselect) {
+            throw new IllegalStateException(
+                    "Valid dates can only be set in multiselect mode");
+        }
+        DateValidationResult result = validateDates(dates);
+        value = toValue(result.getValidDates());
+        return result;
+    }
+
+    /**
+     * Selects a date like a user clicking on it. In multiselect mode the date
+     * is added to the selection, otherwise it replaces the selection.
+     * Disabled dates, dates outside the start and end dates and dates on an
+     * already selected day are ignored.
+     *
+     * @param date
+     *            The date to select
+     * @return True if the selection changed
+     */
+    public boolean select(Date date) {
+        if (date == null || isDateDisabled(date) || !isDateInRange(date)) {
+            return false;
+        }
+        // Dates are matched by day like in unselect
+        if (isSelected(date)) {
+            return false;
+        }
+        if (!multiselect) {
+            value = date;
+            return true;
+        }
+        value = getValueWithChange(Collections.singleton(date),
+                Collections.<Date> emptySet());
+        return true;
+    }
+
+    /**
+     * Unselects a date. Dates are matched by day.
+     *
+     * @param date
+     *            The date to unselect
+     * @return True if the selection changed
+     */
+    public boolean unselect(Date date) {
+        if (!isSelected(date)) {
+            return false;
+        }
+        if (!multiselect) {
+            value = null;
+        } else {
+            value = getValueWithChange(Collections.<Date> emptySet(),
+                    Collections.singleton(date));
+        }
+        return true;
+    }
+
+    /**
+     * Selects the valid days between two dates replacing the current
+     * selection, like a user shift-clicking. Only available in multiselect
+     * mode.
+     *
+     * @param start
+     *            The first date of the range
+     * @param end
+     *            The last date of the range
+     * @return The selected days
+     */
+    public DateRangeSet selectRange(Date start, Date end) {
+        if (!multiselect) {
+            throw new IllegalStateException(
+                    "Ranges can only be selected in multiselect mode");
+        }
+        DateRangeSet range = getValidRange(start, end);
+        value = toValue(range);
+        return range;
+    }
+
+    /**
+     * Clears the selection
+     */
+    public void clearSelection() {
+        value = null;
+    }
+
+    /**
+     * Returns true if a date is selected. Dates are matched by day.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean isSelected(Date date) {
+        Object current = getValue();
+        if (date == null || current == null) {
+            return false;
+        }
+        int day = EpochDayUtil.toEpochDay(date, timeZone);
+        if (current instanceof Date) {
+            return EpochDayUtil.toEpochDay((Date) current, timeZone) == day;
+        }
+        if (current instanceof DateRangeSet) {
+            return ((DateRangeSet) current).containsDay(day);
+        }
+        for (Date selected : (Collection<Date>) current) {
+            if (selected != null
+                    && EpochDayUtil.toEpochDay(selected, timeZone) == day) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies a change to the selection in multiselect mode. Only the added
+     * dates are validated, invalid dates are ignored. Removed dates are
+     * matched by day.
+     *
+     * @param added
+     *            The dates to select
+     * @param removed
+     *            The dates to unselect
+     */
+    public void applySelectionChange(Set<Date> added, Set<Date> removed) {
+        value = getValueWithChange(added, removed);
+    }
+
+    /**
+     * Returns the value with a change applied without changing the model
+     */
+    @SuppressWarnings("unchecked")
+    Object getValueWithChange(Set<Date> added, Set<Date> removed) {
+        List<Date> valid = new ArrayList<Date>(added.size());
+        for (Date date : added) {
+            if (date != null && !isDateDisabled(date) && isDateInRange(date)) {
+                valid.add(date);
+            }
+        }
+
+        Collection<Date> current = (Collection<Date>) getValue();
+        if (current instanceof DateRangeSet) {
+            DateRangeSet rangeSet = (DateRangeSet) current;
+            return rangeSet.difference(DateRangeSet.of(removed, timeZone))
+                    .union(DateRangeSet.of(valid, timeZone));
+        }
+
+        // Removed dates are matched by day
+        DateRangeSet removedDays = DateRangeSet.of(removed, timeZone);
+        Set<Date> newValue = new HashSet<Date>(current.size() + valid.size());
+        for (Date date : current) {
+            if (date == null || !removedDays.containsDate(date)) {
+                newValue.add(date);
+            }
+        }
+        newValue.addAll(valid);
+        return toValue(newValue);
+    }
+
+    /**
+     * Converts a collection of dates to the value type used in multiselect
+     * mode
+     */
+    Object toValue(Collection<Date> dates) {
+        if (rangeCompressedValue) {
+            return DateRangeSet.of(dates, timeZone);
+        }
+        if (dates instanceof DateRangeSet) {
+            return new LinkedHashSet<Date>(dates);
+        }
+        return dates;
+    }
+
+    /**
+     * Determines if several dates can be selected
+     */
+    public void setMultiSelect(boolean multiselect) {
+        this.multiselect = multiselect;
+    }
+
+    /**
+     * If multiselect is true then several Dates can be selected
+     */
+    public boolean isMultiSelect() {
+        return multiselect;
+    }
+
+    /**
+     * Should the value in multiselect mode be a {@link DateRangeSet}, see
+     * {@link SimpleCalendar#setRangeCompressedValue(boolean)}
+     */
+    @SuppressWarnings("unchecked")
+    public void setRangeCompressedValue(boolean rangeCompressed) {
+        this.rangeCompressedValue = rangeCompressed;
+        if (rangeCompressed && multiselect && value != null) {
+            value = toValue((Collection<Date>) value);
+        }
+    }
+
+    /**
+     * Is the value in multiselect mode a {@link DateRangeSet}
+     */
+    public boolean isRangeCompressedValue() {
+        return rangeCompressedValue;
+    }
+
+    /*
+     * Validation
+     */
+
+    /**
+     * Validates a collection of dates against the disabled dates and the start
+     * and end dates. The dates are sorted once so that each day is checked
+     * only once and every rejected date is reported, not just the first one.
+     *
+     * @param dates
+     *            The dates to validate
+     * @return The valid and rejected dates
+     */
+    public DateValidationResult validateDates(Collection<Date> dates) {
+        if (dates instanceof DateRangeSet
+                && isValidRangeSet((DateRangeSet) dates)) {
+            return new DateValidationResult((DateRangeSet) dates,
+                    Collections.<RejectedDate> emptyList());
+        }
+
+        Date[] values = dates.toArray(new Date[dates.size()]);
+        Set<Date> valid = new LinkedHashSet<Date>();
+        List<RejectedDate> rejected = new ArrayList<RejectedDate>();
+
+        // Sort by day, keeping the index of the date in the lower bits
+        long[] keys = new long[values.length];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                // Null dates are always valid
+                valid.add(null);
+            } else {
+                keys[count++] = (long) EpochDayUtil.toEpochDay(values[i],
+                        timeZone) << 32 | i;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        long start = startDate == null ? Long.MIN_VALUE : startDate.getTime();
+        long end = endDate == null ? Long.MAX_VALUE : endDate.getTime();
+
+        int day = 0;
+        boolean disabled = false;
+        for (int i = 0; i < count; i++) {
+            Date date = values[(int) keys[i]];
+            if (i == 0 || (int) (keys[i] >> 32) != day) {
+                day = (int) (keys[i] >> 32);
+                disabled = isDayDisabled(day);
+            }
+            if (disabled) {
+                rejected.add(new RejectedDate(date, Reason.DISABLED));
+            } else if (date.getTime() < start || date.getTime() > end) {
+                rejected.add(new RejectedDate(date, Reason.OUT_OF_RANGE));
+            } else {
+                valid.add(date);
+            }
+        }
+        return new DateValidationResult(valid, rejected);
+    }
+
+    /**
+     * Checks a range set with range arithmetic without iterating its days
+     */
+    private boolean isValidRangeSet(DateRangeSet dates) {
+        if (!dates.getTimeZone().hasSameRules(timeZone)) {
+            return false;
+        }
+        for (int i = 0; i < dates.getRangeCount(); i++) {
+            int start = dates.getRangeStart(i);
+            int end = dates.getRangeEnd(i);
+            if (isAnyDayDisabled(start, end)) {
+                return false;
+            }
+            if (startDate != null
+                    && EpochDayUtil.toTime(start, timeZone) < startDate
+                            .getTime()) {
+                return false;
+            }
+            if (endDate != null
+                    && EpochDayUtil.toTime(end, timeZone) > endDate.getTime()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the valid days of a range of dates. The range is clipped to the
+     * start and end dates and disabled days are left out.
+     *
+     * @param start
+     *            The first date of the range
+     * @param end
+     *            The last date of the range
+     * @return The valid days of the range
+     */
+    public DateRangeSet getValidRange(Date start, Date end) {
+        int first = EpochDayUtil.toEpochDay(start, timeZone);
+        int last = EpochDayUtil.toEpochDay(end, timeZone);
+        if (first > last) {
+            int tmp = first;
+            first = last;
+            last = tmp;
+        }
+
+        if (startDate != null) {
+            int day = EpochDayUtil.toEpochDay(startDate, timeZone);
+            if (EpochDayUtil.toTime(day, timeZone) < startDate.getTime()) {
+                // The start date is in the middle of the day
+                day++;
+            }
+            first = Math.max(first, day);
+        }
+        if (endDate != null) {
+            last = Math.min(last, EpochDayUtil.toEpochDay(endDate, timeZone));
+        }
+        DateRangeSet range = DateRangeSet.ofRange(first, last, timeZone);
+        if (range.isEmpty() || !isAnyDayDisabled(first, last)) {
+            return range;
+        }
+
+        int[] disabled = getDisabledDays(first, last);
+        return range.difference(DateRangeSet.ofDays(disabled,
+                disabled.length, timeZone));
+    }
+
+    /**
+     * Returns true if a date has been disabled, null dates are always enabled
+     */
+    public boolean isDateDisabled(Date date) {
+        if (date == null) {
+            return false;
+        }
+        return isDayDisabled(EpochDayUtil.toEpochDay(date, timeZone));
+    }
+
+    /**
+     * Returns true if the date is not before the start date or after the end
+     * date, null dates are always in range
+     */
+    public boolean isDateInRange(Date date) {
+        if (startDate != null && date != null && date.before(startDate)) {
+            return false;
+        }
+        if (endDate != null && date != null && date.after(endDate)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the disabled dates between two dates. Dates have day resolution
+     * and both limits are included.
+     *
+     * @param start
+     *            The first date of the range
+     * @param end
+     *            The last date of the range
+     * @return The disabled dates in ascending order
+     */
+    public List<Date> getDisabledDates(Date start, Date end) {
+        int[] days = getDisabledDays(EpochDayUtil.toEpochDay(start, timeZone),
+                EpochDayUtil.toEpochDay(end, timeZone));
+        List<Date> dates = new ArrayList<Date>(days.length);
+        for (int day : days) {
+            dates.add(EpochDayUtil.toDate(day, timeZone));
+        }
+        return dates;
+    }
+
+    private boolean isDayDisabled(int day) {
+        return getDisabledDateIndex().isDisabled(day)
+                || calendarRules.isDisabled(day)
+                || getRecurrenceRuleSet().matches(day)
+                || (disabledDateProviderCache != null && disabledDateProviderCache
+                        .isDisabled(day));
+    }
+
+    private boolean isAnyDayDisabled(int first, int last) {
+        return getDisabledDateIndex().isAnyDisabled(first, last)
+                || calendarRules.isAnyDisabled(first, last)
+                || getRecurrenceRuleSet().getMatchingDays(first, last).length > 0
+                || (disabledDateProviderCache != null && disabledDateProviderCache
+                        .getDisabledDays(first, last).length > 0);
+    }
+
+    private int[] getDisabledDays(int first, int last) {
+        int[] days = DisabledDateIndex.merge(calendarRules.getDisabledDays(
+                first, last), getDisabledDateIndex().getDisabledDays(first,
+                last));
+        days = DisabledDateIndex.merge(days, getRecurrenceRuleSet()
+                .getMatchingDays(first, last));
+        if (disabledDateProviderCache == null) {
+            return days;
+        }
+        return DisabledDateIndex.merge(days,
+                disabledDateProviderCache.getDisabledDays(first, last));
+    }
+
+    /*
+     * Rules
+     */
+
+    /**
+     * Sets the oldest selectable date or null to not have a limit
+     */
+    public void setStartDate(Date start) {
+        this.startDate = start;
+    }
+
+    /**
+     * Returns the oldest selectable date or null if not set
+     */
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Sets the last selectable date or null to not have a limit
+     */
+    public void setEndDate(Date end) {
+        this.endDate = end;
+    }
+
+    /**
+     * Returns the last selectable date or null if not set
+     */
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    /**
+     * Sets shared rules which the rules of this model are layered on
+     *
+     * @param rules
+     *            The shared rules or null to remove them
+     */
+    public void setCalendarRules(CalendarRules rules) {
+        calendarRules = rules == null ? CalendarRules.EMPTY : rules;
+    }
+
+    /**
+     * Returns the shared rules, never null
+     */
+    public CalendarRules getCalendarRules() {
+        return calendarRules;
+    }
+
+    /**
+     * Sets the disabled weekdays
+     */
+    public void setDisabledWeekdays(Weekday... days) {
+        disabledWeekdays = Arrays.asList(days);
+        disabledDateIndex = null;
+    }
+
+    /**
+     * Returns the disabled weekdays
+     */
+    public List<Weekday> getDisabledWeekdays() {
+        return disabledWeekdays;
+    }
+
+    /**
+     * Sets the days of the month (1-31) which are disabled each month
+     */
+    public void setDisabledMonthlyDates(Integer... dates) {
+        disabledMonthdays = Arrays.asList(dates);
+        disabledDateIndex = null;
+    }
+
+    /**
+     * Returns the days of the month which are disabled each month
+     */
+    public List<Integer> getDisabledMonthlyDates() {
+        return disabledMonthdays;
+    }
+
+    /**
+     * Sets the disabled dates
+     */
+    public void setDisabledDates(Date... dates) {
+        disabledDates = new ArrayList<Date>(Arrays.asList(dates));
+        disabledDateIndex = null;
+    }
+
+    /**
+     * Returns the disabled dates
+     */
+    public List<Date> getDisabledDates() {
+        return Collections.unmodifiableList(disabledDates);
+    }
+
+    /**
+     * Disables dates in addition to the dates already disabled
+     *
+     * @param dates
+     *            The dates to disable
+     * @return The dates which were not disabled before
+     */
+    public List<Date> addDisabledDates(Date... dates) {
+        DateRangeSet disabled = DateRangeSet.of(disabledDates, timeZone);
+        Set<Integer> addedDays = new HashSet<Integer>();
+        List<Date> added = new ArrayList<Date>(dates.length);
+        for (Date date : dates) {
+            if (date != null && !disabled.containsDate(date)
+                    && addedDays.add(EpochDayUtil.toEpochDay(date, timeZone))) {
+                added.add(date);
+            }
+        }
+        if (!added.isEmpty()) {
+            disabledDates.addAll(added);
+            disabledDateIndex = null;
+        }
+        return added;
+    }
+
+    /**
+     * Enables disabled dates again. Dates are matched by day.
+     *
+     * @param dates
+     *            The dates to enable
+     * @return The disabled dates which were removed
+     */
+    public List<Date> removeDisabledDates(Date... dates) {
+        DateRangeSet days = DateRangeSet.of(Arrays.asList(dates), timeZone);
+        List<Date> removed = new ArrayList<Date>();
+        for (Iterator<Date> i = disabledDates.iterator(); i.hasNext();) {
+            Date date = i.next();
+            if (date != null && days.containsDate(date)) {
+                i.remove();
+                removed.add(date);
+            }
+        }
+        if (!removed.isEmpty()) {
+            disabledDateIndex = null;
+        }
+        return removed;
+    }
+
+    /**
+     * Sets rules for recurring disabled days
+     */
+    public void setDisabledRecurrenceRules(RecurrenceRule... rules) {
+        disabledRecurrenceRules = Arrays.asList(rules);
+        recurrenceRuleSet = null;
+    }
+
+    /**
+     * Returns the rules for recurring disabled days
+     */
+    public List<RecurrenceRule> getDisabledRecurrenceRules() {
+        return disabledRecurrenceRules;
+    }
+
+    /**
+     * Sets a provider of disabled dates
+     *
+     * @param provider
+     *            The provider or null to remove it
+     * @param cacheSize
+     *            The amount of months cached
+     */
+    public void setDisabledDateProvider(DisabledDateProvider provider,
+            int cacheSize) {
+        if (provider == null) {
+            disabledDateProviderCache = null;
+        } else {
+            disabledDateProviderCache = new DisabledDateProviderCache(
+                    provider, timeZone, cacheSize);
+        }
+    }
+
+    /**
+     * Returns the provider of disabled dates or null
+     */
+    public DisabledDateProvider getDisabledDateProvider() {
+        if (disabledDateProviderCache == null) {
+            return null;
+        }
+        return disabledDateProviderCache.getProvider();
+    }
+
+    /**
+     * Returns the cache of the disabled date provider or null
+     */
+    DisabledDateProviderCache getDisabledDateProviderCache() {
+        return disabledDateProviderCache;
+    }
+
+    /**
+     * Returns the compiled disabled weekdays, monthly dates and dates of this
+     * model, not including the shared {@link CalendarRules}
+     */
+    public DisabledDateIndex getDisabledDateIndex() {
+        if (disabledDateIndex == null) {
+            disabledDateIndex = DisabledDateIndex.compile(
+                    disabledWeekdays.toArray(new Weekday[disabledWeekdays
+                            .size()]), disabledMonthdays
+                            .toArray(new Integer[disabledMonthdays.size()]),
+                    disabledDates.toArray(new Date[disabledDates.size()]),
+                    timeZone);
+        }
+        return disabledDateIndex;
+    }
+
+    private RecurrenceRuleSet getRecurrenceRuleSet() {
+        if (recurrenceRuleSet == null) {
+            recurrenceRuleSet = new RecurrenceRuleSet(disabledRecurrenceRules);
+        }
+        return recurrenceRuleSet;
+    }
+
+    /*
+     * Navigation
+     */
+
+    /**
+     * Returns the displayed year
+     */
+    public int getDisplayedYear() {
+        return Day.getYearOfMonthKey(displayedMonth);
+    }
+
+    /**
+     * Returns the displayed month (0-11)
+     */
+    public int getDisplayedMonth() {
+        return Day.getMonthOfMonthKey(displayedMonth);
+    }
+
+    /**
+     * Displays a month if any of its days is within the start and end dates
+     *
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     * @return True if the month is displayed
+     */
+    public boolean showMonth(int year, int month) {
+        return showMonthKey(Day.getMonthKey(year, month));
+    }
+
+    /**
+     * Displays the month after the displayed month, see
+     * {@link #showMonth(int, int)}
+     */
+    public boolean nextMonth() {
+        return showMonthKey(displayedMonth + 1);
+    }
+
+    /**
+     * Displays the month before the displayed month, see
+     * {@link #showMonth(int, int)}
+     */
+    public boolean previousMonth() {
+        return showMonthKey(displayedMonth - 1);
+    }
+
+    /**
+     * Displays the same month next year, see {@link #showMonth(int, int)}
+     */
+    public boolean nextYear() {
+        return showMonthKey(displayedMonth + 12);
+    }
+
+    /**
+     * Displays the same month previous year, see {@link #showMonth(int, int)}
+     */
+    public boolean previousYear() {
+        return showMonthKey(displayedMonth - 12);
+    }
+
+    private boolean showMonthKey(int monthKey) {
+        int first = Day.getFirstDayOfMonthKey(monthKey);
+        int last = Day.getFirstDayOfMonthKey(monthKey + 1) - 1;
+        if (startDate != null
+                && last < EpochDayUtil.toEpochDay(startDate, timeZone)) {
+            return false;
+        }
+        if (endDate != null
+                && first > EpochDayUtil.toEpochDay(endDate, timeZone)) {
+            return false;
+        }
+        displayedMonth = monthKey;
+        return true;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        CompactSerialization.writeDates(out, disabledDates, timeZone);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        disabledDates = new ArrayList<Date>(Arrays.asList(CompactSerialization
+                .readDates(in)));
+    }
+}
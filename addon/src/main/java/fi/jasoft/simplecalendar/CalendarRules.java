@@ -0,0 +1,445 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import fi.jasoft.simplecalendar.shared.Weekday;
+
+/**
+ * An immutable set of disabled weekdays, days of month and dates which can be
+ * shared by any number of {@link SimpleCalendar}s, for example a list of
+ * national holidays. The rules are compiled once when built and are safe to
+ * use from several threads.
+ * <p>
+ * Rules can be layered on top of other rules with {@link #extend()}, a date
+ * is disabled if it is disabled by any layer. The disabled dates set directly
+ * on a calendar are a layer on top of its rules.
+ * <p>
+ * Rules shared by every session should be {@link #register(String, CalendarRules)
+ * registered}, a serialized calendar then only refers to the rules by their
+ * id instead of carrying a copy of them.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public final class CalendarRules implements Serializable {
+
+    /**
+     * Builds {@link CalendarRules}
+     */
+    public static final class Builder {
+
+        private final CalendarRules base;
+
+        private final Set<Weekday> weekdays = new LinkedHashSet<Weekday>();
+
+        private final Set<Integer> monthdays = new LinkedHashSet<Integer>();
+
+        private final Set<Date> dates = new LinkedHashSet<Date>();
+
+        private Builder(CalendarRules base) {
+            this.base = base;
+        }
+
+        /**
+         * Disables weekdays
+         */
+        public Builder disableWeekdays(Weekday... days) {
+            weekdays.addAll(Arrays.asList(days));
+            return this;
+        }
+
+        /**
+         * Disables days of month, values should be between 1 and 31
+         */
+        public Builder disableMonthlyDates(Integer... days) {
+            for (Integer day : days) {
+                if (day != null && (day < 1 || day > 31)) {
+                    throw new IllegalArgumentException(
+                            "Day of month must be between 1 and 31");
+                }
+            }
+            monthdays.addAll(Arrays.asList(days));
+            return this;
+        }
+
+        /**
+         * Disables dates
+         */
+        public Builder disableDates(Date... days) {
+            for (Date day : days) {
+                // Dates are mutable, keep a copy
+                dates.add(day == null ? null : new Date(day.getTime()));
+            }
+            return this;
+        }
+
+        /**
+         * Builds and compiles the rules
+         */
+        public CalendarRules build() {
+            return new CalendarRules(base, new ArrayList<Weekday>(weekdays),
+                    new ArrayList<Integer>(monthdays), new ArrayList<Date>(
+                            dates), base == null ? TimeZone.getDefault()
+                            : base.timeZone);
+        }
+    }
+
+    /**
+     * The serialized form of the rules, either the id of registered rules or
+     * the rules with the dates written compactly
+     */
+    private static final class SerializedForm implements Serializable {
+
+        private transient CalendarRules rules;
+
+        SerializedForm(CalendarRules rules) {
+            this.rules = rules;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            String id = getRegisteredId(rules);
+            out.writeBoolean(id != null);
+            if (id != null) {
+                out.writeUTF(id);
+                return;
+            }
+            out.writeObject(rules.base);
+            out.writeObject(rules.timeZone);
+            out.writeInt(rules.weekdays.size());
+            for (Weekday weekday : rules.weekdays) {
+                out.writeObject(weekday);
+            }
+            out.writeInt(rules.monthdays.size());
+            for (Integer monthday : rules.monthdays) {
+                out.writeObject(monthday);
+            }
+            CompactSerialization.writeDates(out, rules.dates, rules.timeZone);
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException,
+                ClassNotFoundException {
+            in.defaultReadObject();
+            if (in.readBoolean()) {
+                String id = in.readUTF();
+                rules = getRegistered(id);
+                if (rules == null) {
+                    throw new InvalidObjectException("Calendar rules " + id
+                            + " are not registered");
+                }
+                return;
+            }
+            CalendarRules base = (CalendarRules) in.readObject();
+            TimeZone timeZone = (TimeZone) in.readObject();
+            List<Weekday> weekdays = new ArrayList<Weekday>();
+            for (int i = in.readInt(); i > 0; i--) {
+                weekdays.add((Weekday) in.readObject());
+            }
+            List<Integer> monthdays = new ArrayList<Integer>();
+            for (int i = in.readInt(); i > 0; i--) {
+                monthdays.add((Integer) in.readObject());
+            }
+            List<Date> dates = Arrays.asList(CompactSerialization
+                    .readDates(in));
+            if (base == null && weekdays.isEmpty() && monthdays.isEmpty()
+                    && dates.isEmpty()) {
+                rules = EMPTY;
+            } else {
+                rules = new CalendarRules(base, weekdays, monthdays, dates,
+                        timeZone);
+            }
+        }
+
+        private Object readResolve() {
+            return rules;
+        }
+    }
+
+    /**
+     * Rules which do not disable anything
+     */
+    public static final CalendarRules EMPTY = builder().build();
+
+    private static final Map<String, CalendarRules> registeredRules = new HashMap<String, CalendarRules>();
+
+    private static final Map<CalendarRules, String> registeredIds = new IdentityHashMap<CalendarRules, String>();
+
+    private final CalendarRules base;
+
+    private final List<Weekday> weekdays;
+
+    private final List<Integer> monthdays;
+
+    private final List<Date> dates;
+
+    private final TimeZone timeZone;
+
+    // Compiled rules of this layer, recompiled after deserialization
+    private transient volatile DisabledDateIndex index;
+
+    // The dates of all layers, merged when first needed
+    private transient volatile List<Date> allDates;
+
+    private CalendarRules(CalendarRules base, List<Weekday> weekdays,
+            List<Integer> monthdays, List<Date> dates, TimeZone timeZone) {
+        this.base = base;
+        this.weekdays = Collections.unmodifiableList(weekdays);
+        this.monthdays = Collections.unmodifiableList(monthdays);
+        this.dates = new CompactDateList(dates);
+        this.timeZone = timeZone;
+        this.index = compile();
+    }
+
+    /**
+     * Returns a builder for new rules
+     */
+    public static Builder builder() {
+        return new Builder(null);
+    }
+
+    /**
+     * Registers rules with an id which is serialized instead of the rules.
+     * The rules must be registered with the same id in every JVM the
+     * calendars are deserialized in, typically when the application starts.
+     *
+     * @param id
+     *            The id of the rules
+     * @param rules
+     *            The rules or null to remove the registration
+     */
+    public static void register(String id, CalendarRules rules) {
+        if (id == null) {
+            throw new IllegalArgumentException("Id must not be null");
+        }
+        synchronized (registeredRules) {
+            CalendarRules previous = rules == null ? registeredRules
+                    .remove(id) : registeredRules.put(id, rules);
+            if (previous != null) {
+                registeredIds.remove(previous);
+            }
+            if (rules != null) {
+                String previousId = registeredIds.put(rules, id);
+                if (previousId != null && !previousId.equals(id)) {
+                    registeredRules.remove(previousId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the rules registered with an id or null if none
+     */
+    public static CalendarRules getRegistered(String id) {
+        synchronized (registeredRules) {
+            return registeredRules.get(id);
+        }
+    }
+
+    private static String getRegisteredId(CalendarRules rules) {
+        synchronized (registeredRules) {
+            return registeredIds.get(rules);
+        }
+    }
+
+    /**
+     * Returns a builder for rules which are layered on top of these rules
+     */
+    public Builder extend() {
+        return new Builder(this);
+    }
+
+    /**
+     * Returns the rules these rules are layered on or null if none
+     */
+    public CalendarRules getBase() {
+        return base;
+    }
+
+    /**
+     * Returns the time zone dates are resolved to days in, the default time
+     * zone when the rules were built
+     */
+    public TimeZone getTimeZone() {
+        return (TimeZone) timeZone.clone();
+    }
+
+    /**
+     * Returns the weekdays disabled by this layer
+     */
+    public List<Weekday> getDisabledWeekdays() {
+        return weekdays;
+    }
+
+    /**
+     * Returns the days of month disabled by this layer
+     */
+    public List<Integer> getDisabledMonthlyDates() {
+        return monthdays;
+    }
+
+    /**
+     * Returns the dates disabled by this layer. The returned dates must not be
+     * modified.
+     */
+    public List<Date> getDisabledDates() {
+        return dates;
+    }
+
+    /**
+     * Returns the weekdays disabled by this layer and the layers below it
+     */
+    public List<Weekday> getAllDisabledWeekdays() {
+        if (base == null) {
+            return weekdays;
+        }
+        return concat(base.getAllDisabledWeekdays(), weekdays);
+    }
+
+    /**
+     * Returns the days of month disabled by this layer and the layers below it
+     */
+    public List<Integer> getAllDisabledMonthlyDates() {
+        if (base == null) {
+            return monthdays;
+        }
+        return concat(base.getAllDisabledMonthlyDates(), monthdays);
+    }
+
+    /**
+     * Returns the dates disabled by this layer and the layers below it
+     */
+    public List<Date> getAllDisabledDates() {
+        if (base == null) {
+            return dates;
+        }
+        List<Date> all = allDates;
+        if (all == null) {
+            // Merged once and shared by every calendar using the rules
+            all = concat(base.getAllDisabledDates(), dates);
+            if (!(all instanceof CompactDateList)) {
+                all = new CompactDateList(all);
+            }
+            allDates = all;
+        }
+        return all;
+    }
+
+    /**
+     * Returns true if these rules disable nothing
+     */
+    public boolean isEmpty() {
+        return getIndex().isEmpty() && (base == null || base.isEmpty());
+    }
+
+    /**
+     * Returns true if a date is disabled by any layer, null dates are never
+     * disabled
+     */
+    public boolean isDateDisabled(Date date) {
+        if (date == null) {
+            return false;
+        }
+        return isDisabled(EpochDayUtil.toEpochDay(date, timeZone));
+    }
+
+    /**
+     * Returns true if an epoch day is disabled by any layer
+     */
+    boolean isDisabled(int epochDay) {
+        return getIndex().isDisabled(epochDay)
+                || (base != null && base.isDisabled(epochDay));
+    }
+
+    /**
+     * Returns true if any day of a range is disabled by any layer
+     */
+    boolean isAnyDisabled(int fromDay, int toDay) {
+        return getIndex().isAnyDisabled(fromDay, toDay)
+                || (base != null && base.isAnyDisabled(fromDay, toDay));
+    }
+
+    /**
+     * Returns the days of a range disabled by any layer in ascending order
+     */
+    int[] getDisabledDays(int fromDay, int toDay) {
+        int[] days = getIndex().getDisabledDays(fromDay, toDay);
+        if (base == null) {
+            return days;
+        }
+        return DisabledDateIndex.merge(base.getDisabledDays(fromDay, toDay),
+                days);
+    }
+
+    /**
+     * Returns the compiled rules of this layer
+     */
+    DisabledDateIndex getIndex() {
+        DisabledDateIndex compiled = index;
+        if (compiled == null) {
+            // The index is immutable, compiling it twice is harmless
+            compiled = compile();
+            index = compiled;
+        }
+        return compiled;
+    }
+
+    private DisabledDateIndex compile() {
+        return DisabledDateIndex.compile(
+                weekdays.toArray(new Weekday[weekdays.size()]),
+                monthdays.toArray(new Integer[monthdays.size()]),
+                dates.toArray(new Date[dates.size()]), timeZone);
+    }
+
+    private static <T> List<T> concat(List<T> first, List<T> second) {
+        if (second.isEmpty()) {
+            return first;
+        }
+        if (first.isEmpty()) {
+            return second;
+        }
+        List<T> all = new ArrayList<T>(first.size() + second.size());
+        all.addAll(first);
+        all.addAll(second);
+        return Collections.unmodifiableList(all);
+    }
+
+    private Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    private void readObject(ObjectInputStream in)
+            throws InvalidObjectException {
+        throw new InvalidObjectException("Serialized form required");
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.RandomAccess;
+import java.util.TimeZone;
+
+/**
+ * An unmodifiable list of dates which is serialized with
+ * {@link CompactSerialization}. Used for the disabled date lists of the rules
+ * and the shared state which are otherwise serialized as a date object per
+ * date.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+final class CompactDateList extends AbstractList<Date> implements
+        RandomAccess, Serializable {
+
+    private transient Date[] dates;
+
+    CompactDateList(Collection<Date> dates) {
+        this.dates = dates.toArray(new Date[dates.size()]);
+    }
+
+    @Override
+    public Date get(int index) {
+        return dates[index];
+    }
+
+    @Override
+    public int size() {
+        return dates.length;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        CompactSerialization.writeDates(out, Arrays.asList(dates),
+                TimeZone.getDefault());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        dates = CompactSerialization.readDates(in);
+    }
+}
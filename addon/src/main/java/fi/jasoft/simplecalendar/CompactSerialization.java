@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Writes dates and day ranges as variable length deltas of epoch days. A list
+ * of dates at midnight takes about two bytes per date instead of a
+ * serialized {@link Date} object per date.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+final class CompactSerialization {
+
+    // Elements allocated before they are read
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private CompactSerialization() {
+        // Utility class
+    }
+
+    /**
+     * Writes dates in their order. Each date is written as the difference of
+     * its epoch day to the previous date and its offset from the midnight of
+     * the day, so the dates are restored exactly.
+     *
+     * @param out
+     *            The output
+     * @param dates
+     *            The dates, may contain null
+     * @param timeZone
+     *            The time zone the days are resolved in
+     */
+    static void writeDates(DataOutput out, Collection<Date> dates,
+            TimeZone timeZone) throws IOException {
+        out.writeUTF(timeZone.getID());
+        writeVarLong(out, dates.size());
+        long previousDay = 0;
+        for (Date date : dates) {
+            if (date == null) {
+                // Deltas are written plus one, zero means null
+                writeVarLong(out, 0);
+                continue;
+            }
+            int day = EpochDayUtil.toEpochDay(date, timeZone);
+            long offset = date.getTime() - EpochDayUtil.toTime(day, timeZone);
+            writeVarLong(out, zigZag(day - previousDay) + 1);
+            writeVarLong(out, zigZag(offset));
+            previousDay = day;
+        }
+    }
+
+    /**
+     * Reads dates written with
+     * {@link #writeDates(DataOutput, Collection, TimeZone)}
+     */
+    static Date[] readDates(DataInput in) throws IOException {
+        TimeZone timeZone = TimeZone.getTimeZone(in.readUTF());
+        int length = readLength(in);
+        List<Date> dates = new ArrayList<Date>(initialCapacity(length));
+        long previousDay = 0;
+        for (int i = 0; i < length; i++) {
+            long delta = readVarLong(in);
+            if (delta == 0) {
+                dates.add(null);
+                continue;
+            }
+            int day = (int) (previousDay + unZigZag(delta - 1));
+            long offset = unZigZag(readVarLong(in));
+            dates.add(new Date(EpochDayUtil.toTime(day, timeZone) + offset));
+            previousDay = day;
+        }
+        return dates.toArray(new Date[dates.size()]);
+    }
+
+    /**
+     * Writes sorted, non-overlapping day ranges as the gap to the previous
+     * range and the length of the range
+     *
+     * @param out
+     *            The output
+     * @param starts
+     *            The first days of the ranges
+     * @param ends
+     *            The last days of the ranges, inclusive
+     */
+    static void writeRanges(DataOutput out, int[] starts, int[] ends)
+            throws IOException {
+        writeVarLong(out, starts.length);
+        long previousEnd = 0;
+        for (int i = 0; i < starts.length; i++) {
+            writeVarLong(out, zigZag(starts[i] - previousEnd));
+            writeVarLong(out, (long) ends[i] - starts[i]);
+            previousEnd = ends[i];
+        }
+    }
+
+    /**
+     * Reads ranges written with {@link #writeRanges(DataOutput, int[], int[])}
+     *
+     * @return The first days of the ranges followed by the last days
+     */
+    static int[][] readRanges(DataInput in) throws IOException {
+        int count = readLength(in);
+        int[] starts = new int[initialCapacity(count)];
+        int[] ends = new int[starts.length];
+        long previousEnd = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == starts.length) {
+                starts = Arrays.copyOf(starts, Math.min(count, i * 2));
+                ends = Arrays.copyOf(ends, starts.length);
+            }
+            starts[i] = (int) (previousEnd + unZigZag(readVarLong(in)));
+            ends[i] = (int) (starts[i] + readVarLong(in));
+            previousEnd = ends[i];
+        }
+        return new int[][] { starts, ends };
+    }
+
+    /**
+     * Returns the capacity to allocate for a length read from the stream.
+     * Larger arrays grow as their elements are read so that a corrupt length
+     * cannot allocate more memory than the stream contains.
+     */
+    private static int initialCapacity(int length) {
+        return Math.min(length, MAX_INITIAL_CAPACITY);
+    }
+
+    private static int readLength(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Invalid length " + length);
+        }
+        return (int) length;
+    }
+
+    private static void writeVarLong(DataOutput out, long value)
+            throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length number");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.Serializable;
+import java.util.regex.Pattern;
+
+/**
+ * A short label and a style key shown in the cell of a date, for example the
+ * remaining capacity or the price of the day
+ * 
+ * @author John Ahlroos (www.jasoft.fi)
+ * 
+ */
+@SuppressWarnings("serial")
+public class DateMetadata implements Serializable {
+
+    private static final Pattern STYLE_KEY = Pattern.compile("[a-zA-Z0-9_-]+");
+
+    private final String label;
+    private final String styleKey;
+
+    /**
+     * Creates metadata for a date
+     * 
+     * @param label
+     *            A short text shown below the day number or null
+     * @param styleKey
+     *            A style name added to the cell as
+     *            <code>date-panel-grid-&lt;styleKey&gt;</code> or null. May
+     *            only contain letters, digits, underscores and hyphens.
+     * @throws IllegalArgumentException
+     *             if the style key is not a valid style name
+     */
+    public DateMetadata(String label, String styleKey) {
+        this.label = label;
+        this.styleKey = checkStyleKey(styleKey);
+    }
+
+    /**
+     * Returns the style key if it is null or a valid style name
+     * 
+     * @throws IllegalArgumentException
+     *             if the style key is not a valid style name
+     */
+    static String checkStyleKey(String styleKey) {
+        if (styleKey != null && !STYLE_KEY.matcher(styleKey).matches()) {
+            throw new IllegalArgumentException("Invalid style key \""
+                    + styleKey + "\", only letters, digits, underscores "
+                    + "and hyphens are allowed");
+        }
+        return styleKey;
+    }
+
+    /**
+     * Returns the label shown in the cell or null
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the style key added to the cell or null
+     */
+    public String getStyleKey() {
+        return styleKey;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+
+import fi.jasoft.simplecalendar.shared.Day;
+
+/**
+ * Bounded least recently used cache of the metadata a
+ * {@link DateMetadataProvider} returns, stored as arrays of labels and style
+ * keys indexed by day of month.
+ * 
+ * @author John Ahlroos (www.jasoft.fi)
+ * 
+ */
+@SuppressWarnings("serial")
+final class DateMetadataCache implements Serializable {
+
+    /**
+     * The metadata of a month, index 0 is the first day of the month
+     */
+    static final class Month implements Serializable {
+
+        final String[] labels;
+        final String[] styleKeys;
+
+        Month(int days) {
+            labels = new String[days];
+            styleKeys = new String[days];
+        }
+    }
+
+    private static class LruMap extends LinkedHashMap<Integer, Month> {
+
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Month> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private final DateMetadataProvider provider;
+    private final TimeZone timeZone;
+    private final LruMap months;
+
+    DateMetadataCache(DateMetadataProvider provider, TimeZone timeZone,
+            int maxSize) {
+        this.provider = provider;
+        this.timeZone = timeZone;
+        this.months = new LruMap(maxSize);
+    }
+
+    DateMetadataProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Returns the metadata of a month. Queries the provider if the month is
+     * not cached.
+     * 
+     * @param monthKey
+     *            The month, see {@link Day#getMonthKey(int, int)}
+     */
+    Month getMonth(int monthKey) {
+        Month month = months.get(monthKey);
+        if (month == null) {
+            month = queryMonth(monthKey);
+            months.put(monthKey, month);
+        }
+        return month;
+    }
+
+    private Month queryMonth(int monthKey) {
+        int first = Day.getFirstDayOfMonthKey(monthKey);
+        int last = Day.getFirstDayOfMonthKey(monthKey + 1) - 1;
+        Month month = new Month(last - first + 1);
+
+        Map<Date, DateMetadata> metadata = provider.getMetadata(
+                EpochDayUtil.toDate(first, timeZone),
+                EpochDayUtil.toDate(last, timeZone));
+        if (metadata != null) {
+            for (Entry<Date, DateMetadata> entry : metadata.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    int day = EpochDayUtil.toEpochDay(entry.getKey(), timeZone);
+                    if (day >= first && day <= last) {
+                        month.labels[day - first] = entry.getValue()
+                                .getLabel();
+                        // Checked again as subclasses may override the getter
+                        month.styleKeys[day - first] = DateMetadata
+                                .checkStyleKey(entry.getValue().getStyleKey());
+                    }
+                }
+            }
+        }
+        return month;
+    }
+
+    /**
+     * Removes all months from the cache
+     */
+    void invalidateAll() {
+        months.clear();
+    }
+}
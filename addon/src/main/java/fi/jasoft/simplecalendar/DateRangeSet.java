@@ -0,0 +1,478 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * An immutable set of days stored as sorted, coalesced day ranges. Selecting
+ * a year of consecutive days costs as much as selecting a single day.
+ * <p>
+ * The set is a {@link Set} of {@link Date}s where each day is represented by
+ * its midnight in the time zone of the set. Like in any set only the exact
+ * dates are contained, use {@link #containsDate(Date)} to check if any date
+ * within a day is in the set. Equality and the hash code follow the
+ * {@link Set} contract, so a range set equals a set of the same midnights.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public final class DateRangeSet extends AbstractSet<Date> implements
+        Serializable {
+
+    private final TimeZone timeZone;
+
+    // First and last epoch days of each range, both inclusive
+    private final int[] starts;
+    private final int[] ends;
+
+    private final int size;
+
+    // The sum of the hash codes of the dates, computed when first needed
+    private transient int hashCode;
+    private transient boolean hashCodeComputed;
+
+    /**
+     * The serialized form of a set, the time zone id and the ranges as
+     * variable length deltas
+     */
+    private static final class SerializedForm implements Serializable {
+
+        private transient DateRangeSet set;
+
+        SerializedForm(DateRangeSet set) {
+            this.set = set;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.writeUTF(set.timeZone.getID());
+            CompactSerialization.writeRanges(out, set.starts, set.ends);
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException {
+            TimeZone timeZone = TimeZone.getTimeZone(in.readUTF());
+            int[][] ranges = CompactSerialization.readRanges(in);
+            set = new DateRangeSet(timeZone, ranges[0], ranges[1]);
+        }
+
+        private Object readResolve() {
+            return set;
+        }
+    }
+
+    private DateRangeSet(TimeZone timeZone, int[] starts, int[] ends) {
+        this.timeZone = timeZone;
+        this.starts = starts;
+        this.ends = ends;
+
+        long days = 0;
+        for (int i = 0; i < starts.length; i++) {
+            days += (long) ends[i] - starts[i] + 1;
+        }
+        this.size = (int) Math.min(days, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns an empty set
+     *
+     * @param timeZone
+     *            The time zone days are resolved in
+     */
+    public static DateRangeSet empty(TimeZone timeZone) {
+        return new DateRangeSet(timeZone, new int[0], new int[0]);
+    }
+
+    /**
+     * Returns a set containing the days of the given dates
+     *
+     * @param dates
+     *            The dates to include, null dates are ignored
+     * @param timeZone
+     *            The time zone days are resolved in
+     */
+    public static DateRangeSet of(Collection<Date> dates, TimeZone timeZone) {
+        if (dates instanceof DateRangeSet
+                && ((DateRangeSet) dates).timeZone.equals(timeZone)) {
+            return (DateRangeSet) dates;
+        }
+
+        int[] days = new int[dates.size()];
+        int count = 0;
+        for (Date date : dates) {
+            if (date != null) {
+                days[count++] = EpochDayUtil.toEpochDay(date, timeZone);
+            }
+        }
+        return ofDays(days, count, timeZone);
+    }
+
+    /**
+     * Returns a set containing all days between two dates, both included
+     *
+     * @param start
+     *            The first date of the range
+     * @param end
+     *            The last date of the range
+     * @param timeZone
+     *            The time zone days are resolved in
+     */
+    public static DateRangeSet range(Date start, Date end, TimeZone timeZone) {
+        int from = EpochDayUtil.toEpochDay(start, timeZone);
+        int to = EpochDayUtil.toEpochDay(end, timeZone);
+        return ofRange(Math.min(from, to), Math.max(from, to), timeZone);
+    }
+
+    /**
+     * Returns a set containing all days between two epoch days
+     *
+     * @param firstDay
+     *            The first day of the range
+     * @param lastDay
+     *            The last day of the range, inclusive
+     * @param timeZone
+     *            The time zone days are resolved in
+     */
+    static DateRangeSet ofRange(int firstDay, int lastDay, TimeZone timeZone) {
+        if (firstDay > lastDay) {
+            return empty(timeZone);
+        }
+        return new DateRangeSet(timeZone, new int[] { firstDay },
+                new int[] { lastDay });
+    }
+
+    /**
+     * Returns a set of epoch days
+     *
+     * @param days
+     *            The epoch days, in any order
+     * @param count
+     *            The amount of days in the array to use
+     * @param timeZone
+     *            The time zone days are resolved in
+     */
+    static DateRangeSet ofDays(int[] days, int count, TimeZone timeZone) {
+        Arrays.sort(days, 0, count);
+
+        int ranges = 0;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            int day = days[i];
+            if (ranges > 0 && day <= ends[ranges - 1] + 1L) {
+                ends[ranges - 1] = Math.max(ends[ranges - 1], day);
+            } else {
+                starts[ranges] = day;
+                ends[ranges] = day;
+                ranges++;
+            }
+        }
+        return new DateRangeSet(timeZone, Arrays.copyOf(starts, ranges),
+                Arrays.copyOf(ends, ranges));
+    }
+
+    /**
+     * Returns a set containing the days of this set and another set
+     *
+     * @param other
+     *            The set to add
+     * @return The union of the sets
+     */
+    public DateRangeSet union(DateRangeSet other) {
+        other = of(other, timeZone);
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty() && other.timeZone.equals(timeZone)) {
+            return other;
+        }
+
+        int[] newStarts = new int[starts.length + other.starts.length];
+        int[] newEnds = new int[newStarts.length];
+        int ranges = 0;
+        int i = 0;
+        int j = 0;
+        while (i < starts.length || j < other.starts.length) {
+            int start;
+            int end;
+            if (j == other.starts.length
+                    || (i < starts.length && starts[i] <= other.starts[j])) {
+                start = starts[i];
+                end = ends[i++];
+            } else {
+                start = other.starts[j];
+                end = other.ends[j++];
+            }
+            if (ranges > 0 && start <= newEnds[ranges - 1] + 1L) {
+                newEnds[ranges - 1] = Math.max(newEnds[ranges - 1], end);
+            } else {
+                newStarts[ranges] = start;
+                newEnds[ranges] = end;
+                ranges++;
+            }
+        }
+        return new DateRangeSet(timeZone, Arrays.copyOf(newStarts, ranges),
+                Arrays.copyOf(newEnds, ranges));
+    }
+
+    /**
+     * Returns a set containing the days of this set which are not in another
+     * set
+     *
+     * @param other
+     *            The set to remove
+     * @return The difference of the sets
+     */
+    public DateRangeSet difference(DateRangeSet other) {
+        other = of(other, timeZone);
+        if (other.isEmpty() || isEmpty()) {
+            return this;
+        }
+
+        int[] newStarts = new int[starts.length + other.starts.length];
+        int[] newEnds = new int[newStarts.length];
+        int ranges = 0;
+        int j = 0;
+        for (int i = 0; i < starts.length; i++) {
+            long start = starts[i];
+            int end = ends[i];
+
+            // Skip removed ranges ending before this range
+            while (j < other.starts.length && other.ends[j] < start) {
+                j++;
+            }
+
+            // Cut out removed ranges overlapping this range
+            int k = j;
+            while (k < other.starts.length && other.starts[k] <= end) {
+                if (other.starts[k] > start) {
+                    newStarts[ranges] = (int) start;
+                    newEnds[ranges] = other.starts[k] - 1;
+                    ranges++;
+                }
+                start = Math.max(start, other.ends[k] + 1L);
+                k++;
+            }
+            if (start <= end) {
+                newStarts[ranges] = (int) start;
+                newEnds[ranges] = end;
+                ranges++;
+            }
+        }
+        return new DateRangeSet(timeZone, Arrays.copyOf(newStarts, ranges),
+                Arrays.copyOf(newEnds, ranges));
+    }
+
+    /**
+     * Returns the time zone the days of the set are resolved in
+     */
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * Returns the amount of coalesced ranges in the set
+     */
+    public int getRangeCount() {
+        return starts.length;
+    }
+
+    /**
+     * Returns the first epoch day of a range
+     *
+     * @param range
+     *            The index of the range
+     */
+    public int getRangeStart(int range) {
+        return starts[range];
+    }
+
+    /**
+     * Returns the last epoch day of a range, inclusive
+     *
+     * @param range
+     *            The index of the range
+     */
+    public int getRangeEnd(int range) {
+        return ends[range];
+    }
+
+    /**
+     * Returns the first date of a range
+     *
+     * @param range
+     *            The index of the range
+     */
+    public Date getRangeStartDate(int range) {
+        return EpochDayUtil.toDate(starts[range], timeZone);
+    }
+
+    /**
+     * Returns the last date of a range, inclusive
+     *
+     * @param range
+     *            The index of the range
+     */
+    public Date getRangeEndDate(int range) {
+        return EpochDayUtil.toDate(ends[range], timeZone);
+    }
+
+    /**
+     * Returns true if the day is in the set
+     *
+     * @param epochDay
+     *            The day as days since 1970-01-01
+     */
+    public boolean containsDay(int epochDay) {
+        int i = Arrays.binarySearch(starts, epochDay);
+        if (i >= 0) {
+            return true;
+        }
+        int range = -(i + 1) - 1;
+        return range >= 0 && epochDay <= ends[range];
+    }
+
+    /**
+     * Returns true if the day of a date is in the set, whatever the time of
+     * the date is
+     *
+     * @param date
+     *            The date
+     */
+    public boolean containsDate(Date date) {
+        return containsDay(EpochDayUtil.toEpochDay(date, timeZone));
+    }
+
+    /**
+     * Returns true if the date is the midnight of a day in the set, see
+     * {@link #containsDate(Date)}
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Date)) {
+            return false;
+        }
+        long time = ((Date) o).getTime();
+        int day = EpochDayUtil.toEpochDay((Date) o, timeZone);
+        return containsDay(day) && EpochDayUtil.toTime(day, timeZone) == time;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    @Override
+    public Iterator<Date> iterator() {
+        return new Iterator<Date>() {
+
+            private int range = 0;
+            private long day = starts.length > 0 ? starts[0] : 0;
+
+            @Override
+            public boolean hasNext() {
+                return range < starts.length;
+            }
+
+            @Override
+            public Date next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Date date = EpochDayUtil.toDate((int) day, timeZone);
+                if (day == ends[range]) {
+                    range++;
+                    if (range < starts.length) {
+                        day = starts[range];
+                    }
+                } else {
+                    day++;
+                }
+                return date;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Compares the ranges of two range sets in the same time zone directly,
+     * other sets are compared by their dates like any sets
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof DateRangeSet) {
+            DateRangeSet other = (DateRangeSet) o;
+            if (timeZone.getID().equals(other.timeZone.getID())) {
+                return Arrays.equals(starts, other.starts)
+                        && Arrays.equals(ends, other.ends);
+            }
+        }
+        return super.equals(o);
+    }
+
+    /**
+     * Returns the sum of the hash codes of the dates like any set. Computed
+     * once, since the set is immutable.
+     */
+    @Override
+    public int hashCode() {
+        if (!hashCodeComputed) {
+            int h = 0;
+            for (int i = 0; i < starts.length; i++) {
+                for (long day = starts[i]; day <= ends[i]; day++) {
+                    long time = EpochDayUtil.toTime((int) day, timeZone);
+                    h += (int) (time ^ (time >>> 32));
+                }
+            }
+            hashCode = h;
+            hashCodeComputed = true;
+        }
+        return hashCode;
+    }
+
+    private Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    private void readObject(ObjectInputStream in)
+            throws InvalidObjectException {
+        throw new InvalidObjectException("Serialized through SerializedForm");
+    }
+}
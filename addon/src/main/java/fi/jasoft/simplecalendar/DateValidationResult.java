@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The result of validating a collection of dates against the disabled date
+ * rules and the start and end dates of a {@link SimpleCalendar}
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public class DateValidationResult implements Serializable {
+
+    /**
+     * The reason a date was rejected
+     */
+    public enum Reason {
+
+        /**
+         * The date has been disabled
+         */
+        DISABLED("Date has been disabled"),
+
+        /**
+         * The date is before the start date or after the end date
+         */
+        OUT_OF_RANGE("Date is outside of start or end date");
+
+        private final String message;
+
+        private Reason(String message) {
+            this.message = message;
+        }
+
+        /**
+         * Returns a human readable description of the reason
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * A date which did not pass validation
+     */
+    public static class RejectedDate implements Serializable {
+
+        private final Date date;
+        private final Reason reason;
+
+        public RejectedDate(Date date, Reason reason) {
+            this.date = date;
+            this.reason = reason;
+        }
+
+        /**
+         * Returns the rejected date
+         */
+        public Date getDate() {
+            return date;
+        }
+
+        /**
+         * Returns the reason why the date was rejected
+         */
+        public Reason getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return date + ": " + reason.getMessage();
+        }
+    }
+
+    private final Set<Date> validDates;
+    private final List<RejectedDate> rejectedDates;
+
+    public DateValidationResult(Set<Date> validDates,
+            List<RejectedDate> rejectedDates) {
+        if (validDates instanceof DateRangeSet) {
+            // Already immutable
+            this.validDates = validDates;
+        } else {
+            this.validDates = Collections.unmodifiableSet(validDates);
+        }
+        this.rejectedDates = Collections.unmodifiableList(rejectedDates);
+    }
+
+    /**
+     * Returns true if no dates were rejected
+     */
+    public boolean isValid() {
+        return rejectedDates.isEmpty();
+    }
+
+    /**
+     * Returns the dates which passed validation in ascending order
+     */
+    public Set<Date> getValidDates() {
+        return validDates;
+    }
+
+    /**
+     * Returns the dates which did not pass validation in ascending order
+     */
+    public List<RejectedDate> getRejectedDates() {
+        return rejectedDates;
+    }
+
+    @Override
+    public String toString() {
+        if (isValid()) {
+            return "All dates are valid";
+        }
+        return rejectedDates.size() + " date(s) rejected " + rejectedDates;
+    }
+}
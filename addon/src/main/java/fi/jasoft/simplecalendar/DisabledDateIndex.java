@@ -0,0 +1,322 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+import fi.jasoft.simplecalendar.shared.Day;
+import fi.jasoft.simplecalendar.shared.Weekday;
+
+/**
+ * Compiled form of the disabled weekday, day of month and date rules of a
+ * calendar. Lookups do not allocate and are answered in constant time.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public final class DisabledDateIndex implements Serializable {
+
+    /**
+     * Largest day span which is stored as a bit set, wider spans fall back to
+     * a binary search of the sorted days.
+     */
+    private static final int MAX_BITSET_SPAN = 1 << 20;
+
+    private final TimeZone timeZone;
+
+    // Bit n set when weekday with ordinal n is disabled
+    private final int weekdayMask;
+
+    // Bit n set when day of month n is disabled
+    private final int monthdayMask;
+
+    // Sorted distinct explicitly disabled epoch days
+    private final int[] days;
+
+    // Bit set of explicitly disabled days starting from days[0]
+    private final long[] dayBits;
+
+    private DisabledDateIndex(TimeZone timeZone, int weekdayMask,
+            int monthdayMask, int[] days) {
+        this.timeZone = timeZone;
+        this.weekdayMask = weekdayMask;
+        this.monthdayMask = monthdayMask;
+        this.days = days;
+
+        if (days.length > 0
+                && (long) days[days.length - 1] - days[0] < MAX_BITSET_SPAN) {
+            int span = days[days.length - 1] - days[0] + 1;
+            dayBits = new long[(span + 63) >>> 6];
+            for (int day : days) {
+                int bit = day - days[0];
+                dayBits[bit >>> 6] |= 1L << bit;
+            }
+        } else {
+            dayBits = null;
+        }
+    }
+
+    /**
+     * Compiles the disabled date rules into an index. Null values are ignored.
+     *
+     * @param weekdays
+     *            The disabled weekdays
+     * @param monthdays
+     *            The disabled days of month (1-31)
+     * @param dates
+     *            The explicitly disabled dates
+     * @param timeZone
+     *            The time zone the dates are resolved to days in
+     * @return The compiled index
+     */
+    public static DisabledDateIndex compile(Weekday[] weekdays,
+            Integer[] monthdays, Date[] dates, TimeZone timeZone) {
+        int weekdayMask = 0;
+        for (Weekday wd : weekdays) {
+            if (wd != null) {
+                weekdayMask |= 1 << wd.ordinal();
+            }
+        }
+
+        int monthdayMask = 0;
+        for (Integer d : monthdays) {
+            if (d != null && d >= 1 && d <= 31) {
+                monthdayMask |= 1 << d;
+            }
+        }
+
+        int[] days = new int[dates.length];
+        int count = 0;
+        for (Date d : dates) {
+            if (d != null) {
+                days[count++] = EpochDayUtil.toEpochDay(d, timeZone);
+            }
+        }
+        Arrays.sort(days, 0, count);
+
+        // Remove duplicates
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || days[distinct - 1] != days[i]) {
+                days[distinct++] = days[i];
+            }
+        }
+
+        return new DisabledDateIndex(timeZone, weekdayMask, monthdayMask,
+                distinct == days.length ? days : Arrays.copyOf(days, distinct));
+    }
+
+    /**
+     * Returns the time zone the index resolves dates in
+     */
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * Returns true if no rules have been compiled into the index
+     */
+    public boolean isEmpty() {
+        return weekdayMask == 0 && monthdayMask == 0 && days.length == 0;
+    }
+
+    /**
+     * Returns true if a date has been disabled, null dates are always enabled
+     *
+     * @param date
+     *            The date to check
+     * @return True if date is disabled
+     */
+    public boolean isDisabled(Date date) {
+        if (date == null || isEmpty()) {
+            return false;
+        }
+        return isDisabled(EpochDayUtil.toEpochDay(date, timeZone));
+    }
+
+    /**
+     * Returns true if the day has been disabled
+     *
+     * @param epochDay
+     *            The day to check as days since 1970-01-01
+     * @return True if the day is disabled
+     */
+    public boolean isDisabled(int epochDay) {
+        if (weekdayMask != 0
+                && (weekdayMask & 1 << Day.getDayOfWeek(epochDay)) != 0) {
+            return true;
+        }
+        if (monthdayMask != 0
+                && (monthdayMask & 1 << Day.getDayOfMonth(epochDay)) != 0) {
+            return true;
+        }
+        return isExplicitlyDisabled(epochDay);
+    }
+
+    private boolean isExplicitlyDisabled(int epochDay) {
+        if (days.length == 0 || epochDay < days[0]
+                || epochDay > days[days.length - 1]) {
+            return false;
+        }
+        if (dayBits != null) {
+            int bit = epochDay - days[0];
+            return (dayBits[bit >>> 6] & 1L << bit) != 0;
+        }
+        return Arrays.binarySearch(days, epochDay) >= 0;
+    }
+
+    /**
+     * Returns the first disabled day within a range of days
+     *
+     * @param fromDay
+     *            The first epoch day of the range, inclusive
+     * @param toDay
+     *            The last epoch day of the range, inclusive
+     * @return The first disabled epoch day or {@link Integer#MIN_VALUE} if no
+     *         day in the range is disabled
+     */
+    public int firstDisabledDay(int fromDay, int toDay) {
+        if (fromDay > toDay || isEmpty()) {
+            return Integer.MIN_VALUE;
+        }
+
+        // Any seven consecutive days contain each weekday
+        if (weekdayMask != 0) {
+            long last = Math.min(toDay, (long) fromDay + 6);
+            for (long day = fromDay; day <= last; day++) {
+                if (isDisabled((int) day)) {
+                    return (int) day;
+                }
+            }
+            return Integer.MIN_VALUE;
+        }
+
+        int explicit = firstExplicitDay(fromDay, toDay);
+        if (monthdayMask == 0) {
+            return explicit;
+        }
+
+        // Any 62 consecutive days contain each day of month
+        long last = explicit == Integer.MIN_VALUE ? toDay : explicit - 1L;
+        last = Math.min(last, (long) fromDay + 61);
+        for (long day = fromDay; day <= last; day++) {
+            if ((monthdayMask & 1 << Day.getDayOfMonth((int) day)) != 0) {
+                return (int) day;
+            }
+        }
+        return explicit;
+    }
+
+    /**
+     * Returns all disabled days within a range of days
+     *
+     * @param fromDay
+     *            The first epoch day of the range, inclusive
+     * @param toDay
+     *            The last epoch day of the range, inclusive
+     * @return The disabled epoch days in ascending order
+     */
+    public int[] getDisabledDays(int fromDay, int toDay) {
+        if (fromDay > toDay || isEmpty()) {
+            return new int[0];
+        }
+
+        if (weekdayMask == 0 && monthdayMask == 0) {
+            int start = firstIndexOnOrAfter(fromDay);
+            int end = start;
+            while (end < days.length && days[end] <= toDay) {
+                end++;
+            }
+            return Arrays.copyOfRange(days, start, end);
+        }
+
+        int[] result = new int[16];
+        int count = 0;
+        for (long day = fromDay; day <= toDay; day++) {
+            if (isDisabled((int) day)) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = (int) day;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Merges two sorted arrays of days leaving out duplicates
+     *
+     * @param first
+     *            Days in ascending order
+     * @param second
+     *            Days in ascending order
+     * @return The days of both arrays in ascending order
+     */
+    static int[] merge(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        if (first.length == 0) {
+            return second;
+        }
+        int[] merged = new int[first.length + second.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length || j < second.length) {
+            int day;
+            if (j == second.length
+                    || (i < first.length && first[i] <= second[j])) {
+                day = first[i++];
+            } else {
+                day = second[j++];
+            }
+            if (count == 0 || merged[count - 1] != day) {
+                merged[count++] = day;
+            }
+        }
+        return Arrays.copyOf(merged, count);
+    }
+
+    /**
+     * Returns true if any day within a range of days is disabled
+     *
+     * @param fromDay
+     *            The first epoch day of the range, inclusive
+     * @param toDay
+     *            The last epoch day of the range, inclusive
+     */
+    public boolean isAnyDisabled(int fromDay, int toDay) {
+        return firstDisabledDay(fromDay, toDay) != Integer.MIN_VALUE;
+    }
+
+    private int firstExplicitDay(int fromDay, int toDay) {
+        int i = firstIndexOnOrAfter(fromDay);
+        if (i < days.length && days[i] <= toDay) {
+            return days[i];
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    private int firstIndexOnOrAfter(int epochDay) {
+        int i = Arrays.binarySearch(days, epochDay);
+        return i >= 0 ? i : -(i + 1);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Provides disabled dates one month at a time. The calendar asks for the
+ * months the user navigates to and caches the results, see
+ * {@link SimpleCalendar#setDisabledDateProvider(DisabledDateProvider)}.
+ * 
+ * @author John Ahlroos (www.jasoft.fi)
+ * 
+ */
+public interface DisabledDateProvider extends Serializable {
+
+    /**
+     * Returns the disabled dates of a month
+     * 
+     * @param start
+     *            The first day of the month
+     * @param end
+     *            The last day of the month
+     * @return The disabled dates between start and end, dates outside the
+     *         month are ignored
+     */
+    public Collection<Date> getDisabledDates(Date start, Date end);
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import fi.jasoft.simplecalendar.shared.Day;
+
+/**
+ * Bounded least recently used cache of the disabled days a
+ * {@link DisabledDateProvider} returns, stored as a bit mask per month.
+ * 
+ * @author John Ahlroos (www.jasoft.fi)
+ * 
+ */
+@SuppressWarnings("serial")
+final class DisabledDateProviderCache implements Serializable {
+
+    private static class LruMap extends LinkedHashMap<Integer, Integer> {
+
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private final DisabledDateProvider provider;
+    private final TimeZone timeZone;
+    private final LruMap masks;
+
+    DisabledDateProviderCache(DisabledDateProvider provider,
+            TimeZone timeZone, int maxSize) {
+        this.provider = provider;
+        this.timeZone = timeZone;
+        this.masks = new LruMap(maxSize);
+    }
+
+    DisabledDateProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Returns the disabled days of a month as a bit mask where bit n is set
+     * when day n of the month is disabled. Queries the provider if the month
+     * is not cached.
+     * 
+     * @param monthKey
+     *            The month, see {@link Day#getMonthKey(int, int)}
+     */
+    int getMask(int monthKey) {
+        Integer mask = masks.get(monthKey);
+        if (mask == null) {
+            mask = queryMask(monthKey);
+            masks.put(monthKey, mask);
+        }
+        return mask;
+    }
+
+    private int queryMask(int monthKey) {
+        int first = Day.getFirstDayOfMonthKey(monthKey);
+        int last = Day.getFirstDayOfMonthKey(monthKey + 1) - 1;
+
+        Collection<Date> dates = provider.getDisabledDates(
+                EpochDayUtil.toDate(first, timeZone),
+                EpochDayUtil.toDate(last, timeZone));
+
+        int mask = 0;
+        if (dates != null) {
+            for (Date date : dates) {
+                if (date != null) {
+                    int day = EpochDayUtil.toEpochDay(date, timeZone);
+                    if (day >= first && day <= last) {
+                        mask |= 1 << (day - first + 1);
+                    }
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns true if the provider has disabled the day
+     * 
+     * @param epochDay
+     *            The day as days since 1970-01-01
+     */
+    boolean isDisabled(int epochDay) {
+        return (getMask(Day.getMonthKey(epochDay)) & 1 << Day
+                .getDayOfMonth(epochDay)) != 0;
+    }
+
+    /**
+     * Returns the days the provider has disabled within a range of days
+     * 
+     * @param fromDay
+     *            The first epoch day of the range, inclusive
+     * @param toDay
+     *            The last epoch day of the range, inclusive
+     * @return The disabled epoch days in ascending order
+     */
+    int[] getDisabledDays(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return new int[0];
+        }
+        int[] days = new int[16];
+        int count = 0;
+        int lastMonth = Day.getMonthKey(toDay);
+        for (int key = Day.getMonthKey(fromDay); key <= lastMonth; key++) {
+            int mask = getMask(key);
+            int first = Day.getFirstDayOfMonthKey(key);
+            while (mask != 0) {
+                int dayOfMonth = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                int day = first + dayOfMonth - 1;
+                if (day >= fromDay && day <= toDay) {
+                    if (count == days.length) {
+                        days = Arrays.copyOf(days, count * 2);
+                    }
+                    days[count++] = day;
+                }
+            }
+        }
+        return Arrays.copyOf(days, count);
+    }
+
+    /**
+     * Removes a month from the cache
+     */
+    void invalidate(int monthKey) {
+        masks.remove(monthKey);
+    }
+
+    /**
+     * Removes all months from the cache
+     */
+    void invalidateAll() {
+        masks.clear();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+import fi.jasoft.simplecalendar.shared.Day;
+
+/**
+ * Conversions between dates and epoch days in a given time zone. The
+ * calendar arithmetic of epoch days is in {@link Day}.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+final class EpochDayUtil {
+
+    private EpochDayUtil() {
+        // Utility class
+    }
+
+    /**
+     * Returns the epoch day of a date in the given time zone
+     *
+     * @param date
+     *            The date to convert
+     * @param timeZone
+     *            The time zone the day is resolved in
+     * @return The epoch day of the date
+     */
+    static int toEpochDay(Date date, TimeZone timeZone) {
+        long time = date.getTime();
+        return Day.fromTime(time, timeZone.getOffset(time));
+    }
+
+    /**
+     * Returns the midnight of an epoch day in the given time zone
+     *
+     * @param epochDay
+     *            The epoch day
+     * @param timeZone
+     *            The time zone the day is resolved in
+     * @return A new date instance
+     */
+    static Date toDate(int epochDay, TimeZone timeZone) {
+        return new Date(toTime(epochDay, timeZone));
+    }
+
+    /**
+     * Returns the midnight of an epoch day in the given time zone in
+     * milliseconds since 1970-01-01 UTC
+     *
+     * @param epochDay
+     *            The epoch day
+     * @param timeZone
+     *            The time zone the day is resolved in
+     * @return The start of the day
+     */
+    static long toTime(int epochDay, TimeZone timeZone) {
+        long local = epochDay * Day.MILLIS_PER_DAY;
+        long time = local - timeZone.getOffset(local - timeZone.getRawOffset());
+
+        // Midnight does not exist when daylight saving starts at midnight
+        while (Day.fromTime(time, timeZone.getOffset(time)) < epochDay) {
+            time += 60 * 60 * 1000;
+        }
+        return time;
+    }
+}
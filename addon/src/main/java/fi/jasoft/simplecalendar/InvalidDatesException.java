@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+/**
+ * Thrown when a collection of dates given as the value of a
+ * {@link SimpleCalendar} contains disabled dates or dates outside the start
+ * and end dates. All rejected dates are available through
+ * {@link #getValidationResult()}.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public class InvalidDatesException extends IllegalArgumentException {
+
+    private final DateValidationResult result;
+
+    public InvalidDatesException(DateValidationResult result) {
+        super(createMessage(result));
+        this.result = result;
+    }
+
+    /**
+     * Returns the validation result listing every rejected date
+     */
+    public DateValidationResult getValidationResult() {
+        return result;
+    }
+
+    private static String createMessage(DateValidationResult result) {
+        if (result.getRejectedDates().size() == 1) {
+            return result.getRejectedDates().get(0).getReason().getMessage();
+        }
+        return result.toString();
+    }
+}
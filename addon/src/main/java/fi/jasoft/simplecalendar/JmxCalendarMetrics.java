@@ -0,0 +1,269 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects the measurements of all calendars into counters and a latency
+ * histogram which can be registered as an MXBean. Usage:
+ *
+ * <pre>
+ * JmxCalendarMetrics metrics = new JmxCalendarMetrics();
+ * metrics.register();
+ * SimpleCalendar.setMetrics(metrics);
+ * </pre>
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class JmxCalendarMetrics implements CalendarMetrics,
+        CalendarMetricsMXBean {
+
+    /**
+     * The default name the metrics are registered with
+     */
+    public static final String DEFAULT_NAME = "fi.jasoft.simplecalendar:type=CalendarMetrics";
+
+    // Bucket n counts validations shorter than 2^n microseconds
+    private static final int BUCKETS = 32;
+
+    private final AtomicInteger liveCalendars = new AtomicInteger();
+
+    private final ConcurrentMap<String, AtomicLong> rpcCounts = new ConcurrentHashMap<String, AtomicLong>();
+
+    private final AtomicLongArray validationHistogram = new AtomicLongArray(
+            BUCKETS);
+
+    private final AtomicLong validationCount = new AtomicLong();
+
+    private final AtomicLong validationNanos = new AtomicLong();
+
+    private final AtomicLong rejectedDates = new AtomicLong();
+
+    private final AtomicLong stateResponses = new AtomicLong();
+
+    private final AtomicLong stateBytes = new AtomicLong();
+
+    private final AtomicInteger maxStateBytes = new AtomicInteger();
+
+    private ObjectName registeredName;
+
+    /**
+     * Registers the metrics to the platform MBean server with
+     * {@link #DEFAULT_NAME}
+     */
+    public void register() {
+        register(DEFAULT_NAME);
+    }
+
+    /**
+     * Registers the metrics to the platform MBean server
+     *
+     * @param name
+     *            The object name
+     */
+    public synchronized void register(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(name);
+            server.registerMBean(this, objectName);
+            registeredName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server if registered
+     */
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    registeredName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister "
+                    + registeredName, e);
+        } finally {
+            registeredName = null;
+        }
+    }
+
+    @Override
+    public void calendarAttached() {
+        liveCalendars.incrementAndGet();
+    }
+
+    @Override
+    public void calendarDetached() {
+        liveCalendars.decrementAndGet();
+    }
+
+    @Override
+    public void rpcReceived(String method) {
+        AtomicLong count = rpcCounts.get(method);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = rpcCounts.putIfAbsent(method, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    public void valueValidated(long nanos, int rejected) {
+        long micros = nanos / 1000;
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros),
+                BUCKETS - 1);
+        validationHistogram.incrementAndGet(bucket);
+        validationCount.incrementAndGet();
+        validationNanos.addAndGet(nanos);
+        if (rejected > 0) {
+            rejectedDates.addAndGet(rejected);
+        }
+    }
+
+    @Override
+    public void stateSent(int bytes) {
+        stateResponses.incrementAndGet();
+        stateBytes.addAndGet(bytes);
+        int max = maxStateBytes.get();
+        while (bytes > max && !maxStateBytes.compareAndSet(max, bytes)) {
+            max = maxStateBytes.get();
+        }
+    }
+
+    @Override
+    public int getLiveCalendars() {
+        return liveCalendars.get();
+    }
+
+    @Override
+    public Map<String, Long> getRpcCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : rpcCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    @Override
+    public long getValidationCount() {
+        return validationCount.get();
+    }
+
+    @Override
+    public double getValidationMeanMicros() {
+        long count = validationCount.get();
+        return count == 0 ? 0 : validationNanos.get() / 1000.0 / count;
+    }
+
+    @Override
+    public long getValidation50thPercentileMicros() {
+        return getValidationPercentileMicros(0.5);
+    }
+
+    @Override
+    public long getValidation99thPercentileMicros() {
+        return getValidationPercentileMicros(0.99);
+    }
+
+    /**
+     * Returns a percentile of the validation time in microseconds, the upper
+     * limit of the histogram bucket the percentile falls in
+     *
+     * @param percentile
+     *            The percentile between 0 and 1
+     */
+    public long getValidationPercentileMicros(double percentile) {
+        long[] histogram = getValidationHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    @Override
+    public long[] getValidationHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = validationHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getRejectedDates() {
+        return rejectedDates.get();
+    }
+
+    @Override
+    public long getStateResponses() {
+        return stateResponses.get();
+    }
+
+    @Override
+    public long getStateBytes() {
+        return stateBytes.get();
+    }
+
+    @Override
+    public int getMaxStateBytes() {
+        return maxStateBytes.get();
+    }
+
+    @Override
+    public void reset() {
+        rpcCounts.clear();
+        for (int i = 0; i < BUCKETS; i++) {
+            validationHistogram.set(i, 0);
+        }
+        validationCount.set(0);
+        validationNanos.set(0);
+        rejectedDates.set(0);
+        stateResponses.set(0);
+        stateBytes.set(0);
+        maxStateBytes.set(0);
+    }
+}
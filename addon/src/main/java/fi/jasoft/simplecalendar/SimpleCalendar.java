@@ -16,18 +16,28 @@
 package fi.jasoft.simplecalendar;
 
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
 
+import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.util.converter.Converter.ConversionException;
+import com.vaadin.server.EncodeResult;
+import com.vaadin.server.JsonCodec;
 import com.vaadin.ui.AbstractField;
+import com.vaadin.ui.ConnectorTracker;
 
 import fi.jasoft.simplecalendar.shared.DateValueChangeRpc;
+import fi.jasoft.simplecalendar.shared.Day;
+import fi.jasoft.simplecalendar.shared.DisplayedMonthRpc;
+import fi.jasoft.simplecalendar.shared.RecurrenceRule;
+import fi.jasoft.simplecalendar.shared.SimpleCalendarClientRpc;
 import fi.jasoft.simplecalendar.shared.SimpleCalendarState;
 import fi.jasoft.simplecalendar.shared.Weekday;
 
@@ -38,15 +48,107 @@ public class SimpleCalendar extends AbstractField<Object> {
 		
 		@Override
 		public void selected(Set<Date> dates) {
-			setValue(dates, false);			
+			recordRpc("selected");
+			selectionSequence = 0;
+			resynchronizing = false;
+			setValue(model.toValue(dates), false);			
+		}
+
+		@Override
+		public void rangeSelected(Date start, Date end) {
+			recordRpc("rangeSelected");
+			selectionSequence = 0;
+			resynchronizing = false;
+			setValue(model.toValue(model.getValidRange(start, end)), false);
+		}
+
+		@Override
+		public void changed(int sequence, Set<Date> added, Set<Date> removed) {
+			recordRpc("changed");
+			if (resynchronizing) {
+				// Complete selection has been requested, wait for it
+				return;
+			}
+			if (sequence != selectionSequence + 1 || !isMultiSelect()) {
+				// Changes have been missed, request the complete selection
+				resynchronizing = true;
+				getRpcProxy(SimpleCalendarClientRpc.class)
+						.resynchronizeSelection();
+				return;
+			}
+			selectionSequence = sequence;
+			applySelectionChange(added, removed);
+		}
+
+		@Override
+		public void valueInProgress(boolean inProgress) {
+			recordRpc("valueInProgress");
+			boolean completed = valueInProgress && !inProgress;
+			valueInProgress = inProgress;
+			if (completed) {
+				// Listeners waiting for the complete value are notified even
+				// if the last change was already sent in progress
+				fireValueChange(false);
+			}
+		}
+	};
+	
+	private static final int NO_SEQUENCE = -1;
+	
+	// The sink of the measurements of all calendars, null when disabled
+	private static volatile CalendarMetrics metrics;
+	
+	// The sink which counted this calendar as attached, its detach is counted
+	// by the same sink
+	private transient CalendarMetrics attachCountedBy;
+	
+	// The sequence number of the last selection change received from the client
+	private int selectionSequence = 0;
+	
+	private boolean resynchronizing = false;
+	
+	// Is the user still changing the value received from the client
+	private boolean valueInProgress = false;
+	
+	// The selection and disabled date rules, the state is only for the client
+	private final CalendarModel model = new CalendarModel();
+	
+	// The version of the disabled dates including changes not yet in the state
+	private int disabledDatesVersion = 0;
+	
+	private DisplayedMonthRpc displayedMonthRpc = new DisplayedMonthRpc() {
+		
+		@Override
+		public void monthDisplayed(int year, int month) {
+			recordRpc("monthDisplayed");
+			displayedMonth = Day.getMonthKey(year, month);
+			model.showMonth(year, month);
+			sendProvidedDisabledDays();
+			sendDateMetadata();
 		}
 	};
 	
+	private int disabledDateCacheSize = 24;
+	
+	// The month displayed on the client as year * 12 + month
+	private int displayedMonth = Integer.MIN_VALUE;
+	
+	// The months which have been sent to the client as year * 12 + month
+	private final Set<Integer> sentMonths = new HashSet<Integer>();
+	
+	private DateMetadataCache dateMetadataCache;
+	
+	private int dateMetadataVersion = 0;
+	
+	// The months whose metadata has been sent to the client as year * 12 + month
+	private final Set<Integer> sentMetadataMonths = new HashSet<Integer>();
+	
 	/**
 	 * Default constructor
 	 */
 	public SimpleCalendar() {
 		registerRpc(valueChangeRpc);
+		registerRpc(displayedMonthRpc);
 	}
 	
 	
@@ -86,6 +188,9 @@ public class SimpleCalendar extends AbstractField<Object> {
     @Override
     public Object getValue() {
         if (isMultiSelect() && super.getValue() == null) {
+            if (isRangeCompressedValue()) {
+                return DateRangeSet.empty(getTimeZone());
+            }
             return Collections.EMPTY_SET;
         }
         return super.getValue();
@@ -94,47 +199,141 @@ public class SimpleCalendar extends AbstractField<Object> {
     /**
      * Set the Date(s) which should be selected. If multiselect mode is set then
      * the value should be a collection of dates, if not in multiselect mode the
-     * it should be a Date
+     * it should be a Date. If a collection contains invalid dates an
+     * {@link InvalidDatesException} listing all of them is thrown.
      */
     @Override
     public void setValue(Object newValue) throws ReadOnlyException,
             ConversionException {
-        if (newValue == null) {
-            super.setValue(null);
-        } else if (newValue instanceof Date && !isMultiSelect()) {
-            if (isDateDisabled((Date) newValue)) {
-                throw new IllegalArgumentException("Date has been disabled");
-            } else if (!isDateInRange((Date) newValue)) {
-                throw new IllegalArgumentException(
-                        "Date is outside of start or end date");
-            } else {
-                super.setValue(newValue);
-            }
-        } else if (newValue instanceof Date) {
-            if (isDateDisabled((Date) newValue)) {
-                throw new IllegalArgumentException("Date has been disabled");
-            } else if (!isDateInRange((Date) newValue)) {
-                throw new IllegalArgumentException(
-                        "Date is outside of start or end date");
-            } else {
-                super.setValue(Collections.singleton(newValue));
-            }
-        } else if (newValue instanceof Collection<?> && isMultiSelect()) {
-            for (Date d : (Collection<Date>) newValue) {
-                if (isDateDisabled(d)) {
-                    throw new IllegalArgumentException("Date has been disabled");
-                } else if (!isDateInRange(d)) {
-                    throw new IllegalArgumentException(
-                            "Date is outside of start or end date");
-                }
-            }
-            super.setValue(newValue);
-        } else {
-            throw new IllegalArgumentException(
-                    "The value must be a Date or a collection of dates if multiselect.");
+        // Client side selection changes no longer apply to the new value
+        selectionSequence = NO_SEQUENCE;
+        valueInProgress = false;
+        super.setValue(checkValue(newValue));
+    }
+
+    /**
+     * Validates a value with the model and records the validation time
+     */
+    private Object checkValue(Object newValue) {
+        CalendarMetrics metrics = SimpleCalendar.metrics;
+        if (metrics == null) {
+            return model.checkValue(newValue);
+        }
+        long start = System.nanoTime();
+        try {
+            Object value = model.checkValue(newValue);
+            metrics.valueValidated(System.nanoTime() - start, 0);
+            return value;
+        } catch (InvalidDatesException e) {
+            metrics.valueValidated(System.nanoTime() - start, e
+                    .getValidationResult().getRejectedDates().size());
+            throw e;
+        } catch (IllegalArgumentException e) {
+            metrics.valueValidated(System.nanoTime() - start,
+                    newValue instanceof Date ? 1 : 0);
+            throw e;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.vaadin.ui.AbstractField#setInternalValue(java.lang.Object)
+     */
+    @Override
+    protected void setInternalValue(Object newValue) {
+        super.setInternalValue(newValue);
+        model.setValueUnchecked(newValue);
+    }
+
+    /**
+     * Sets the dates of the collection which pass validation as the value and
+     * returns the dates which did not. Only available in multiselect mode.
+     * 
+     * @param dates
+     *            The dates to select
+     * @return The validation result of the dates
+     */
+    public DateValidationResult setValidDates(Collection<Date> dates) {
+        if (!isMultiSelect()) {
+            throw new IllegalStateException(
+                    "Valid dates can only be set in multiselect mode");
+        }
+        CalendarMetrics metrics = SimpleCalendar.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        DateValidationResult result = model.validateDates(dates);
+        if (metrics != null) {
+            metrics.valueValidated(System.nanoTime() - start, result
+                    .getRejectedDates().size());
+        }
+        selectionSequence = NO_SEQUENCE;
+        super.setValue(model.toValue(result.getValidDates()));
+        return result;
+    }
+
+    /**
+     * Applies a selection change received from the client to the current
+     * value. Only the added dates are validated, invalid dates are ignored.
+     * 
+     * @param added
+     *            The dates selected on the client
+     * @param removed
+     *            The dates unselected on the client
+     */
+    private void applySelectionChange(Set<Date> added, Set<Date> removed) {
+        setValue(model.getValueWithChange(added, removed), false);
+    }
+
+    /**
+     * Returns the valid days of a range of dates. The range is clipped to the
+     * start and end dates and disabled days are left out.
+     * 
+     * @param start
+     *            The first date of the range
+     * @param end
+     *            The last date of the range
+     * @return The valid days of the range
+     */
+    protected DateRangeSet getValidRange(Date start, Date end) {
+        return model.getValidRange(start, end);
+    }
+
+    /**
+     * Should the value in multiselect mode be a {@link DateRangeSet} which
+     * stores the selection as ranges of days instead of a date instance per
+     * selected day. Recommended when large ranges of dates are selected.
+     * 
+     * @param rangeCompressed
+     *            Should the value be a {@link DateRangeSet}
+     */
+    @SuppressWarnings("unchecked")
+    public void setRangeCompressedValue(boolean rangeCompressed) {
+        model.setRangeCompressedValue(rangeCompressed);
+        if (rangeCompressed && isMultiSelect() && super.getValue() != null) {
+            super.setValue(model.toValue((Collection<Date>) super.getValue()));
         }
     }
 
+    /**
+     * Is the value in multiselect mode a {@link DateRangeSet}. See
+     * {@link #setRangeCompressedValue(boolean)}.
+     */
+    public boolean isRangeCompressedValue() {
+        return model.isRangeCompressedValue();
+    }
+
+    /**
+     * Validates a collection of dates against the disabled dates and the start
+     * and end dates. The dates are sorted once so that each day is checked
+     * only once and every rejected date is reported, not just the first one.
+     * 
+     * @param dates
+     *            The dates to validate
+     * @return The valid and rejected dates
+     */
+    public DateValidationResult validateDates(Collection<Date> dates) {
+        return model.validateDates(dates);
+    }
+
     /**
      * Determines if a user can select several dates. Please note that setting
      * this to true will effect {@link #getValue()} and
@@ -145,6 +344,114 @@ public class SimpleCalendar extends AbstractField<Object> {
      */
     public void setMultiSelect(boolean multiselect) {
     	getState().multiselect = multiselect;
+    	model.setMultiSelect(multiselect);
+    }
+
+    /**
+     * Sets how selection changes made by the user are coalesced before they
+     * are sent to the server. With a positive delay all changes made within
+     * the delay are sent together and the value is marked as in progress,
+     * see {@link #isValueInProgress()}. The value is completed when the
+     * calendar loses focus.
+     * 
+     * @param delay
+     *            The delay in milliseconds, 0 to send the changes only when
+     *            the calendar loses focus or negative to send each change
+     *            immediately, the default
+     */
+    public void setSelectionCoalescingDelay(int delay) {
+        getState().selectionCoalescingDelay = delay;
+    }
+
+    /**
+     * Returns the delay of coalesced selection changes, see
+     * {@link #setSelectionCoalescingDelay(int)}
+     */
+    public int getSelectionCoalescingDelay() {
+        return getState(false).selectionCoalescingDelay;
+    }
+
+    /**
+     * Renders the days of the month as a plain table instead of a grid of
+     * widgets. The table uses the same style names and is lighter to render,
+     * which helps when a view contains many calendars.
+     * 
+     * @param lightweight
+     *            True to render the days as a plain table, false to render
+     *            them as widgets, the default
+     */
+    public void setLightweightRendering(boolean lightweight) {
+        getState().lightweightRendering = lightweight;
+    }
+
+    /**
+     * Returns true if the days are rendered as a plain table, see
+     * {@link #setLightweightRendering(boolean)}
+     */
+    public boolean isLightweightRendering() {
+        return getState(false).lightweightRendering;
+    }
+
+    /**
+     * Returns true if the value was changed by the user who is still changing
+     * it. Value change listeners interested only in the complete value can
+     * ignore these events, another event is fired when the value is complete
+     * even if it did not change anymore.
+     */
+    public boolean isValueInProgress() {
+        return valueInProgress;
+    }
+
+    /**
+     * Adds a listener which processes value changes in a background thread
+     * of a shared bounded executor, see
+     * {@link #addAsyncValueChangeListener(AsyncValueChangeListener, Executor)}
+     * 
+     * @param listener
+     *            The listener to add
+     */
+    public void addAsyncValueChangeListener(
+            AsyncValueChangeListener<?> listener) {
+        addAsyncValueChangeListener(listener, null);
+    }
+
+    /**
+     * Adds a listener which processes value changes in a background thread
+     * without holding the session lock. If the value changes again while a
+     * value is being processed only the latest value is processed next and
+     * the result of the older value is discarded. Results are applied to the
+     * UI through {@link com.vaadin.ui.UI#access(Runnable)}.
+     * 
+     * @param listener
+     *            The listener to add
+     * @param executor
+     *            The executor processing the values or null to use a shared
+     *            bounded executor. The executor is not serialized, the shared
+     *            executor is used after the session has been deserialized.
+     */
+    @SuppressWarnings("unchecked")
+    public void addAsyncValueChangeListener(
+            AsyncValueChangeListener<?> listener, Executor executor) {
+        addValueChangeListener(new AsyncValueChangeDispatcher<Object>(
+                (AsyncValueChangeListener<Object>) listener, executor));
+    }
+
+    /**
+     * Removes a listener added with
+     * {@link #addAsyncValueChangeListener(AsyncValueChangeListener)}
+     * 
+     * @param listener
+     *            The listener to remove
+     */
+    public void removeAsyncValueChangeListener(
+            AsyncValueChangeListener<?> listener) {
+        for (Object registered : getListeners(ValueChangeEvent.class)) {
+            if (registered instanceof AsyncValueChangeDispatcher
+                    && ((AsyncValueChangeDispatcher<?>) registered)
+                            .getListener() == listener) {
+                removeValueChangeListener((AsyncValueChangeDispatcher<?>) registered);
+            }
+        }
     }
 
     /**
@@ -162,7 +469,8 @@ public class SimpleCalendar extends AbstractField<Object> {
      * @param day
      */
     public void setDisabledWeekDays(Weekday... days) {
-    	getState().disabledWeekdays = Arrays.asList(days);    	
+    	getState().disabledWeekdays = Arrays.asList(days);
+    	model.setDisabledWeekdays(days);
     }
 
     /**
@@ -186,40 +494,71 @@ public class SimpleCalendar extends AbstractField<Object> {
      * @return True if date is disabled
      */
     protected boolean isDateDisabled(Date date) {
-        if (date == null) {
-            return false;
-        }
+        return model.isDateDisabled(date);
+    }
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
+    /**
+     * Returns the disabled dates between two dates. Dates have day resolution
+     * and both limits are included.
+     * 
+     * @param start
+     *            The first date of the range
+     * @param end
+     *            The last date of the range
+     * @return The disabled dates in ascending order
+     */
+    public List<Date> getDisabledDates(Date start, Date end) {
+        return model.getDisabledDates(start, end);
+    }
 
-        // Check disabled weekdays
-        for (Weekday wd : getDisabledWeekdays()) {
-            if (Weekday.toInteger(wd) == calendar.get(Calendar.DAY_OF_WEEK)) {
-                return true;
-            }
-        }
+    /**
+     * Sets rules which are shared between calendars, for example national
+     * holidays. The disabled weekdays, monthly dates and dates set on this
+     * calendar are applied on top of the rules. The disabled dates of the
+     * rules are resolved to days in the time zone the rules were built in,
+     * see {@link CalendarRules#getTimeZone()}.
+     * 
+     * @param rules
+     *            The shared rules or null to remove them
+     */
+    public void setCalendarRules(CalendarRules rules) {
+        model.setCalendarRules(rules);
+        CalendarRules calendarRules = model.getCalendarRules();
 
-        // Check disabled monthly days
-        for (Integer d : getDisabledMonthlyDates()) {
-            if (calendar.get(Calendar.DAY_OF_MONTH) == d) {
-                return true;
-            }
-        }
+        // The lists are shared with the rules, not copied
+        SimpleCalendarState state = getState();
+        state.sharedDisabledWeekdays = calendarRules.getAllDisabledWeekdays();
+        state.sharedDisabledMonthdays = calendarRules
+                .getAllDisabledMonthlyDates();
+        state.sharedDisabledDates = calendarRules.getAllDisabledDates();
 
-        // Check for disabled dates
-        Calendar dcal = Calendar.getInstance();
-        for (Date d : getDisabledDates()) {
-            dcal.setTime(d);
-            if (calendar.get(Calendar.YEAR) == dcal.get(Calendar.YEAR)
-                    && calendar.get(Calendar.MONTH) == dcal.get(Calendar.MONTH)
-                    && calendar.get(Calendar.DAY_OF_MONTH) == dcal
-                            .get(Calendar.DAY_OF_MONTH)) {
-                return true;
-            }
-        }
+        // The client rebuilds the disabled dates from the state
+        updateDisabledDatesState();
+    }
 
-        return false;
+    /**
+     * Returns the shared rules of this calendar, never null
+     */
+    public CalendarRules getCalendarRules() {
+        return model.getCalendarRules();
+    }
+
+    /**
+     * Returns the compiled disabled date rules set on this calendar, not
+     * including the shared {@link CalendarRules}. The index is rebuilt each
+     * time the disabled weekdays, monthly dates or dates change.
+     * 
+     * @return The disabled date index
+     */
+    protected DisabledDateIndex getDisabledDateIndex() {
+        return model.getDisabledDateIndex();
+    }
+
+    /**
+     * Returns the time zone dates are resolved to days in
+     */
+    protected TimeZone getTimeZone() {
+        return model.getTimeZone();
     }
 
     /**
@@ -230,14 +569,7 @@ public class SimpleCalendar extends AbstractField<Object> {
      * @return
      */
     protected boolean isDateInRange(Date date) {
-        if (getStartDate() != null && date != null
-                && date.before(getStartDate())) {
-            return false;
-        }
-        if (getEndDate() != null && date != null && date.after(getEndDate())) {
-            return false;
-        }
-        return true;
+        return model.isDateInRange(date);
     }
 
     /**
@@ -248,7 +580,8 @@ public class SimpleCalendar extends AbstractField<Object> {
      *            The days of the month which should be disabled each month
      */
     public void setDisabledMonthlyDates(Integer... dates) {
-    	getState().disabledMonthdays  = Arrays.asList(dates);    	
+    	getState().disabledMonthdays  = Arrays.asList(dates);
+    	model.setDisabledMonthlyDates(dates);
     }
 
     /**
@@ -271,7 +604,58 @@ public class SimpleCalendar extends AbstractField<Object> {
      *            Dates which are disabled
      */
     public void setDisabledDates(Date... dates) {
-    	getState().disabledDates = Arrays.asList(dates);    	
+    	model.setDisabledDates(dates);
+    	disabledDatesVersion++;
+    	updateDisabledDatesState();
+    }
+
+    /**
+     * Disables dates in addition to the dates already disabled. Only the
+     * added dates are sent to the client.
+     * 
+     * @param dates
+     *            Dates which should be disabled
+     */
+    public void addDisabledDates(Date... dates) {
+        List<Date> added = model.addDisabledDates(dates);
+        if (!added.isEmpty()) {
+            patchDisabledDates(added, Collections.<Date> emptyList());
+        }
+    }
+
+    /**
+     * Enables dates which have been disabled with
+     * {@link #setDisabledDates(Date...)} or {@link #addDisabledDates(Date...)}
+     * . Dates are matched by day. Only the removed dates are sent to the
+     * client.
+     * 
+     * @param dates
+     *            Dates which should no longer be disabled
+     */
+    public void removeDisabledDates(Date... dates) {
+        List<Date> removed = model.removeDisabledDates(dates);
+        if (!removed.isEmpty()) {
+            patchDisabledDates(Collections.<Date> emptyList(), removed);
+        }
+    }
+
+    /**
+     * Sends a change of the disabled dates to the client without touching the
+     * state so the complete list is not sent again
+     */
+    private void patchDisabledDates(List<Date> added, List<Date> removed) {
+        disabledDatesVersion++;
+        getRpcProxy(SimpleCalendarClientRpc.class).disabledDatesChanged(
+                disabledDatesVersion, added, removed);
+    }
+
+    /**
+     * Puts the complete list of disabled dates into the state
+     */
+    private void updateDisabledDatesState() {
+        SimpleCalendarState state = getState();
+        state.disabledDates = new CompactDateList(model.getDisabledDates());
+        state.disabledDatesVersion = disabledDatesVersion;
     }
 
     /**
@@ -280,13 +664,215 @@ public class SimpleCalendar extends AbstractField<Object> {
      * @return
      */
     public Date[] getDisabledDates() {
-    	List<Date> disabledDates = getState(false).disabledDates;
-        if (disabledDates == null || disabledDates.isEmpty()) {
-            return new Date[0];
-        }
+        List<Date> disabledDates = model.getDisabledDates();
         return disabledDates.toArray(new Date[disabledDates.size()]);
     }
 
+    /**
+     * Sets rules for recurring disabled days, for example the last friday of
+     * each month. The rules are evaluated on the client so only the rules are
+     * sent, not the days they match.
+     * 
+     * @param rules
+     *            The rules
+     */
+    public void setDisabledRecurrenceRules(RecurrenceRule... rules) {
+        getState().disabledRecurrenceRules = Arrays.asList(rules);
+        model.setDisabledRecurrenceRules(rules);
+    }
+
+    /**
+     * Returns the rules for recurring disabled days
+     */
+    public RecurrenceRule[] getDisabledRecurrenceRules() {
+        List<RecurrenceRule> rules = getState(false).disabledRecurrenceRules;
+        if (rules == null) {
+            return new RecurrenceRule[0];
+        }
+        return rules.toArray(new RecurrenceRule[rules.size()]);
+    }
+
+    /**
+     * Sets a provider which is asked for the disabled dates of the months the
+     * user navigates to, in addition to the other disabled dates. The results
+     * are cached per month, see {@link #setDisabledDateCacheSize(int)} and
+     * {@link #invalidateDisabledDates()}.
+     * 
+     * @param provider
+     *            The provider or null to remove the provider
+     */
+    public void setDisabledDateProvider(DisabledDateProvider provider) {
+        model.setDisabledDateProvider(provider, disabledDateCacheSize);
+        getState().disabledDateProvider = provider != null;
+        sentMonths.clear();
+        getRpcProxy(SimpleCalendarClientRpc.class).disabledDaysInvalidated();
+        sendProvidedDisabledDays();
+    }
+
+    /**
+     * Returns the disabled date provider or null if not set
+     */
+    public DisabledDateProvider getDisabledDateProvider() {
+        return model.getDisabledDateProvider();
+    }
+
+    /**
+     * Sets how many months of disabled dates from the disabled date provider
+     * are cached. The least recently used months are removed first.
+     * 
+     * @param months
+     *            The amount of months to cache
+     */
+    public void setDisabledDateCacheSize(int months) {
+        if (months < 1) {
+            throw new IllegalArgumentException(
+                    "Cache size must be at least one month");
+        }
+        disabledDateCacheSize = months;
+        setDisabledDateProvider(getDisabledDateProvider());
+    }
+
+    /**
+     * Returns how many months of disabled dates from the disabled date
+     * provider are cached
+     */
+    public int getDisabledDateCacheSize() {
+        return disabledDateCacheSize;
+    }
+
+    /**
+     * Discards all cached disabled dates of the disabled date provider. The
+     * provider is asked again for the displayed months.
+     */
+    public void invalidateDisabledDates() {
+        DisabledDateProviderCache disabledDateProviderCache = model
+                .getDisabledDateProviderCache();
+        if (disabledDateProviderCache != null) {
+            disabledDateProviderCache.invalidateAll();
+            sentMonths.clear();
+            getRpcProxy(SimpleCalendarClientRpc.class)
+                    .disabledDaysInvalidated();
+            sendProvidedDisabledDays();
+        }
+    }
+
+    /**
+     * Discards the cached disabled dates of a month of the disabled date
+     * provider. If the client has the month the provider is asked again.
+     * 
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     */
+    public void invalidateDisabledDates(int year, int month) {
+        DisabledDateProviderCache disabledDateProviderCache = model
+                .getDisabledDateProviderCache();
+        if (disabledDateProviderCache != null) {
+            int key = Day.getMonthKey(year, month);
+            disabledDateProviderCache.invalidate(key);
+            if (sentMonths.remove(key)) {
+                sendProvidedDisabledDays(key);
+            }
+        }
+    }
+
+    /**
+     * Sends the disabled dates of the displayed month and the adjacent months
+     * to the client unless they have been sent already
+     */
+    private void sendProvidedDisabledDays() {
+        if (displayedMonth != Integer.MIN_VALUE) {
+            sendProvidedDisabledDays(displayedMonth - 1, displayedMonth,
+                    displayedMonth + 1);
+        }
+    }
+
+    private void sendProvidedDisabledDays(int... months) {
+        DisabledDateProviderCache disabledDateProviderCache = model
+                .getDisabledDateProviderCache();
+        if (disabledDateProviderCache == null) {
+            return;
+        }
+        int[] keys = new int[months.length];
+        int[] masks = new int[months.length];
+        int count = 0;
+        for (int month : months) {
+            if (sentMonths.add(month)) {
+                keys[count] = month;
+                masks[count] = disabledDateProviderCache.getMask(month);
+                count++;
+            }
+        }
+        if (count > 0) {
+            getRpcProxy(SimpleCalendarClientRpc.class).disabledDays(
+                    Arrays.copyOf(keys, count), Arrays.copyOf(masks, count));
+        }
+    }
+
+    /**
+     * Sets a provider of labels and style keys shown in the date cells, for
+     * example the remaining capacity of each day. The provider is asked for
+     * the months the user navigates to and the results are cached until
+     * {@link #refreshDateMetadata()} is called.
+     * 
+     * @param provider
+     *            The provider or null to remove the provider
+     */
+    public void setDateMetadataProvider(DateMetadataProvider provider) {
+        if (provider == null) {
+            dateMetadataCache = null;
+        } else {
+            dateMetadataCache = new DateMetadataCache(provider, getTimeZone(),
+                    disabledDateCacheSize);
+        }
+        refreshDateMetadata();
+    }
+
+    /**
+     * Returns the date metadata provider or null if not set
+     */
+    public DateMetadataProvider getDateMetadataProvider() {
+        if (dateMetadataCache == null) {
+            return null;
+        }
+        return dateMetadataCache.getProvider();
+    }
+
+    /**
+     * Discards the cached metadata on the server and the client. The provider
+     * is asked again for the displayed months.
+     */
+    public void refreshDateMetadata() {
+        sentMetadataMonths.clear();
+        if (dateMetadataCache == null) {
+            getState().dateMetadataVersion = 0;
+        } else {
+            dateMetadataCache.invalidateAll();
+            getState().dateMetadataVersion = ++dateMetadataVersion;
+            sendDateMetadata();
+        }
+    }
+
+    /**
+     * Sends the metadata of the displayed month and the adjacent months to the
+     * client unless they have been sent already
+     */
+    private void sendDateMetadata() {
+        if (dateMetadataCache == null || displayedMonth == Integer.MIN_VALUE) {
+            return;
+        }
+        SimpleCalendarClientRpc rpc = getRpcProxy(SimpleCalendarClientRpc.class);
+        for (int month = displayedMonth - 1; month <= displayedMonth + 1; month++) {
+            if (sentMetadataMonths.add(month)) {
+                DateMetadataCache.Month metadata = dateMetadataCache
+                        .getMonth(month);
+                rpc.dateMetadata(dateMetadataVersion, month, metadata.labels,
+                        metadata.styleKeys);
+            }
+        }
+    }
+
     /**
      * Set the oldest date the panel should display or NULL to not have a limit
      * 
@@ -294,7 +880,8 @@ public class SimpleCalendar extends AbstractField<Object> {
      *            The first date in the panel
      */
     public void setStartDate(Date start) {
-    	getState().startDate = start;        
+    	getState().startDate = start;
+    	model.setStartDate(start);
     }
 
     /**
@@ -313,7 +900,8 @@ public class SimpleCalendar extends AbstractField<Object> {
      *            The last date the panel should display
      */
     public void setEndDate(Date end) {
-    	getState().endDate = end;    	
+    	getState().endDate = end;
+    	model.setEndDate(end);
     }
 
     /**
@@ -339,6 +927,60 @@ public class SimpleCalendar extends AbstractField<Object> {
     	}    	
     }
     
+    /**
+     * Sets the sink which receives measurements from all calendars of the JVM,
+     * for example {@link JmxCalendarMetrics}. Nothing is measured when no sink
+     * is set.
+     * 
+     * @param metrics
+     *            The sink or null to stop measuring
+     */
+    public static void setMetrics(CalendarMetrics metrics) {
+        SimpleCalendar.metrics = metrics;
+    }
+
+    /**
+     * Returns the sink of measurements or null if not set
+     */
+    public static CalendarMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static void recordRpc(String method) {
+        CalendarMetrics metrics = SimpleCalendar.metrics;
+        if (metrics != null) {
+            metrics.rpcReceived(method);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.vaadin.ui.AbstractField#attach()
+     */
+    @Override
+    public void attach() {
+        super.attach();
+        CalendarMetrics metrics = SimpleCalendar.metrics;
+        if (metrics != null && attachCountedBy == null) {
+            metrics.calendarAttached();
+            attachCountedBy = metrics;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.vaadin.ui.AbstractField#detach()
+     */
+    @Override
+    public void detach() {
+        // Calendars attached before the sink was set are not counted
+        if (attachCountedBy != null) {
+            attachCountedBy.calendarDetached();
+            attachCountedBy = null;
+        }
+        super.detach();
+    }
+
     /*
      * (non-Javadoc)
      * @see com.vaadin.ui.AbstractField#beforeClientResponse(boolean)
@@ -349,5 +991,34 @@ public class SimpleCalendar extends AbstractField<Object> {
     	if(initial && getLocale() != null){    	   		
     		getState().locale = getLocale().toString();     		    		
     	}    	
+    	if(initial){
+    		// A new client starts from an empty selection
+    		Collection<?> value = isMultiSelect() ? (Collection<?>) getValue() : null;
+    		selectionSequence = value == null || value.isEmpty() ? 0 : NO_SEQUENCE;
+    		resynchronizing = false;
+    		sentMonths.clear();
+    		sentMetadataMonths.clear();
+    		
+    		// Patches sent earlier are lost with the old client
+    		if(getState(false).disabledDatesVersion != disabledDatesVersion){
+    			updateDisabledDatesState();
+    		}
+    	}
+    	
+    	CalendarMetrics metrics = SimpleCalendar.metrics;
+    	if (metrics != null && getUI() != null) {
+    		metrics.stateSent(getEncodedStateLength());
+    	}
+    }
+    
+    /**
+     * Returns the length of the state changes which will be sent to the
+     * client, the complete state if the client has not received a state
+     */
+    private int getEncodedStateLength() {
+        ConnectorTracker tracker = getUI().getConnectorTracker();
+        EncodeResult result = JsonCodec.encode(getState(false),
+                tracker.getDiffState(this), getStateType(), tracker);
+        return result.getDiffOrValue().toJson().length();
     }
 }
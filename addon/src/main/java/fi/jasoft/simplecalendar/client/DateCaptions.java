@@ -0,0 +1,156 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.i18n.client.DateTimeFormat;
+import com.vaadin.client.DateTimeService;
+import com.vaadin.client.LocaleNotLoadedException;
+
+import fi.jasoft.simplecalendar.shared.Day;
+
+/**
+ * Formatted captions and tooltips of a locale. Formatters are looked up once
+ * per pattern and each caption is formatted once per day or month, shared by
+ * all calendars using the locale.
+ * 
+ * @author John Ahlroos (www.jasoft.fi)
+ * 
+ */
+class DateCaptions {
+
+    // Formatted strings kept per map before the map is cleared
+    private static final int MAX_CACHED = 4096;
+
+    private static final Map<String, DateCaptions> captionsByLocale = new HashMap<String, DateCaptions>();
+
+    private static final Map<String, DateTimeFormat> formats = new HashMap<String, DateTimeFormat>();
+
+    private final DateTimeService dts;
+
+    private final String[] weekdayCaptions = new String[7];
+
+    // Month captions by year * 12 + month
+    private final Map<Integer, String> monthCaptions = new HashMap<Integer, String>();
+
+    // Tooltips by pattern and epoch day
+    private final Map<String, Map<Integer, String>> descriptions = new HashMap<String, Map<Integer, String>>();
+
+    private DateCaptions(DateTimeService dts) {
+        this.dts = dts;
+    }
+
+    /**
+     * Returns the captions of the locale of a date time service
+     */
+    static DateCaptions get(DateTimeService dts) {
+        String locale = dts.getLocale();
+        DateCaptions captions = captionsByLocale.get(locale);
+        if (captions == null) {
+            try {
+                // The service of the calendar changes when its locale does
+                captions = new DateCaptions(new DateTimeService(locale));
+            } catch (LocaleNotLoadedException e) {
+                throw new IllegalStateException("Locale '" + locale
+                        + "' is not loaded", e);
+            }
+            captionsByLocale.put(locale, captions);
+        }
+        return captions;
+    }
+
+    /**
+     * Returns the capitalized short name of a weekday
+     * 
+     * @param weekday
+     *            The weekday (0-6) where 0=Sunday
+     */
+    String getWeekdayCaption(int weekday) {
+        String caption = weekdayCaptions[weekday];
+        if (caption == null) {
+            caption = capitalize(dts.getShortDay(weekday));
+            weekdayCaptions[weekday] = caption;
+        }
+        return caption;
+    }
+
+    /**
+     * Returns the capitalized name and year of a month
+     * 
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     */
+    String getMonthCaption(int year, int month) {
+        int monthKey = Day.getMonthKey(year, month);
+        String caption = monthCaptions.get(monthKey);
+        if (caption == null) {
+            caption = capitalize(dts.formatDate(
+                    Day.toLocalDate(Day.toEpochDay(year, month, 1)),
+                    "MMMM yyyy"));
+            put(monthCaptions, monthKey, caption);
+        }
+        return caption;
+    }
+
+    /**
+     * Returns the tooltip of a day
+     * 
+     * @param pattern
+     *            The {@link DateTimeFormat} pattern of the tooltip
+     * @param epochDay
+     *            The day
+     */
+    String getDescription(String pattern, int epochDay) {
+        Map<Integer, String> patternDescriptions = descriptions.get(pattern);
+        if (patternDescriptions == null) {
+            patternDescriptions = new HashMap<Integer, String>();
+            descriptions.put(pattern, patternDescriptions);
+        }
+        String description = patternDescriptions.get(epochDay);
+        if (description == null) {
+            description = getFormat(pattern).format(Day.toLocalDate(epochDay));
+            put(patternDescriptions, epochDay, description);
+        }
+        return description;
+    }
+
+    private static DateTimeFormat getFormat(String pattern) {
+        DateTimeFormat format = formats.get(pattern);
+        if (format == null) {
+            format = DateTimeFormat.getFormat(pattern);
+            formats.put(pattern, format);
+        }
+        return format;
+    }
+
+    private static void put(Map<Integer, String> cache, int key, String value) {
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+        cache.put(key, value);
+    }
+
+    private static String capitalize(String caption) {
+        if (caption.isEmpty()) {
+            return caption;
+        }
+        return Character.toUpperCase(caption.charAt(0)) + caption.substring(1);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.client;
+
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * Listener for listening to navigation between months
+ * 
+ * @author John Ahlroos (www.jasoft.fi)
+ * 
+ */
+public interface DisplayedMonthChangeListener {
+
+    /**
+     * Triggered when the calendar displays another month
+     * 
+     * @param target
+     *            The calendar widget
+     * @param year
+     *            The displayed year
+     * @param month
+     *            The displayed month (0-11)
+     */
+    public void displayedMonthChange(Widget target, int year, int month);
+}
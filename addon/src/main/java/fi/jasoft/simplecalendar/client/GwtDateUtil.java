@@ -15,14 +15,14 @@
  */
 package fi.jasoft.simplecalendar.client;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
-import com.google.gwt.i18n.client.DateTimeFormat;
+import fi.jasoft.simplecalendar.shared.LocalDateUtil;
 
 /**
- * Utility class for widgets using dates
+ * Utility class for widgets using dates. The algorithms are in
+ * {@link LocalDateUtil} which does not depend on GWT.
  * 
  * @author John Ahlroos (www.jasoft.fi)
  * 
@@ -40,30 +40,13 @@ public class GwtDateUtil {
      * @return The new date after incrementation
      */
     public static Date incrementDays(Date date, int xdays){
-	    long time = date.getTime();
-	    time = time + (xdays * 24 * 60 * 60 * 1000);
-
-	    Date newDate = new Date(time);
-
-	    Integer dateHour = new Integer(DateTimeFormat.getFormat("H").format(date));
-	    Integer newDateHour = new Integer(DateTimeFormat.getFormat("H").format(newDate));
-	    
-	    if (!dateHour.equals(newDateHour)){
-	    	if (dateHour > newDateHour || (dateHour.equals(0) && newDateHour.equals(23))){
-			    time = time + (60 * 60 * 1000);
-			    newDate.setTime(time);
-	    	} else if (dateHour < newDateHour){
-	    		time = time - (60 * 60 * 1000);
-	    		newDate.setTime(time);
-	    	}
-	    }
-	
-	    return newDate;
+        return LocalDateUtil.incrementDays(date, xdays);
     }
     
     /**
-     * Returns a list of dates between two dates. Does not return the limits.
-     * Dates have day resolution.
+     * Returns a list of dates between two dates including the limits, one
+     * date per day. The dates between the limits have the time of day of the
+     * start date.
      * 
      * @param start
      *            The starting date
@@ -72,14 +55,7 @@ public class GwtDateUtil {
      * @return A list with all dates between the given start and end dates.
      */
     public static List<Date> getDatesBetween(Date start, Date end) {
-        List<Date> dates = new ArrayList<Date>();
-		Date current = start;
-		while(current.before(end)){
-			dates.add(current);
-			current = incrementDays(current, 1);
-		}
-		dates.add(end);
-		return dates;
+        return LocalDateUtil.getDatesBetween(start, end);
 	}
     
     /**
@@ -92,11 +68,6 @@ public class GwtDateUtil {
      * @return Are the two dates equals
      */
     public static boolean dateEqualResolutionDay(Date d1, Date d2){
-    	if(d1.getYear() == d2.getYear() 
-    			&& d1.getMonth() == d2.getMonth() 
-    			&& d1.getDate() == d2.getDate()){
-    		return true;
-    	}
-    	return false;
+    	return LocalDateUtil.dateEqualResolutionDay(d1, d2);
     }
 }
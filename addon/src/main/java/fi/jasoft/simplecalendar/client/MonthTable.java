@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.client;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.EventTarget;
+import com.google.gwt.dom.client.NativeEvent;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.dom.client.TableCellElement;
+import com.google.gwt.dom.client.TableElement;
+import com.google.gwt.dom.client.TableRowElement;
+import com.google.gwt.dom.client.TableSectionElement;
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * The day grid of a month as a plain table. The cells are elements instead of
+ * widgets and the events of all cells are handled by the table, so a calendar
+ * needs one widget for its days. The rows and cells have the same style names
+ * as in the grid of the calendar and the cells showing a day have the epoch
+ * day in the {@value #DAY_ATTRIBUTE} attribute.
+ * 
+ * @author John Ahlroos (www.jasoft.fi)
+ * 
+ */
+class MonthTable extends Widget {
+
+    /**
+     * The attribute containing the epoch day of a cell
+     */
+    static final String DAY_ATTRIBUTE = "data-day";
+
+    private final int columns;
+
+    private final TableElement table;
+
+    private final TableCellElement[] cells;
+
+    // The shown content and title per cell, only changes are written
+    private final String[] contents;
+    private final String[] titles;
+
+    /**
+     * Creates the table. The first row contains the weekday captions.
+     * 
+     * @param styleName
+     *            The style name of the table, the rows and cells use it as
+     *            their prefix
+     * @param rows
+     *            The amount of rows
+     * @param columns
+     *            The amount of columns
+     */
+    MonthTable(String styleName, int rows, int columns) {
+        this.columns = columns;
+        cells = new TableCellElement[rows * columns];
+        contents = new String[cells.length];
+        titles = new String[cells.length];
+
+        Document document = Document.get();
+        table = document.createTableElement();
+        table.setClassName(styleName);
+        table.setCellSpacing(0);
+        table.setCellPadding(0);
+        table.getStyle().setWidth(100, Unit.PCT);
+        TableSectionElement body = document.createTBodyElement();
+        table.appendChild(body);
+
+        for (int r = 0; r < rows; r++) {
+            TableRowElement row = document.createTRElement();
+            row.setClassName(styleName + (r == 0 ? "-days" : "-week"));
+            for (int c = 0; c < columns; c++) {
+                TableCellElement cell = document.createTDElement();
+                if (r == 0) {
+                    cell.setClassName(styleName + "-day-caption");
+                } else {
+                    cell.setClassName(styleName + "-day");
+                    cell.getStyle().setHeight(39, Unit.PX);
+                }
+                row.appendChild(cell);
+                cells[r * columns + c] = cell;
+            }
+            body.appendChild(row);
+        }
+        setElement(table);
+    }
+
+    /**
+     * Sets the weekday caption of a column
+     * 
+     * @param column
+     *            The column
+     * @param html
+     *            The caption as HTML
+     */
+    void setCaption(int column, String html) {
+        setContent(column, html);
+    }
+
+    /**
+     * Shows a day in a cell
+     * 
+     * @param row
+     *            The row of the cell, 1 or greater
+     * @param column
+     *            The column of the cell
+     * @param epochDay
+     *            The day
+     * @param html
+     *            The content of the cell as HTML
+     * @param title
+     *            The tooltip of the cell
+     */
+    void showDay(int row, int column, int epochDay, String html, String title) {
+        int index = row * columns + column;
+        TableCellElement cell = cells[index];
+        String day = String.valueOf(epochDay);
+        if (!day.equals(cell.getAttribute(DAY_ATTRIBUTE))) {
+            cell.setAttribute(DAY_ATTRIBUTE, day);
+        }
+        setContent(index, html);
+        if (!title.equals(titles[index])) {
+            titles[index] = title;
+            cell.setTitle(title);
+        }
+    }
+
+    /**
+     * Empties a cell which shows no day
+     * 
+     * @param row
+     *            The row of the cell, 1 or greater
+     * @param column
+     *            The column of the cell
+     */
+    void hideDay(int row, int column) {
+        int index = row * columns + column;
+        cells[index].removeAttribute(DAY_ATTRIBUTE);
+        setContent(index, "");
+        if (titles[index] != null) {
+            titles[index] = null;
+            cells[index].removeAttribute("title");
+        }
+    }
+
+    private void setContent(int index, String html) {
+        if (!html.equals(contents[index])) {
+            contents[index] = html;
+            cells[index].setInnerHTML(html);
+        }
+    }
+
+    /**
+     * Adds or removes a style name of a cell
+     * 
+     * @param row
+     *            The row of the cell
+     * @param column
+     *            The column of the cell
+     * @param styleName
+     *            The style name
+     * @param add
+     *            True to add, false to remove the style name
+     */
+    void setCellStyleName(int row, int column, String styleName, boolean add) {
+        if (add) {
+            cells[row * columns + column].addClassName(styleName);
+        } else {
+            cells[row * columns + column].removeClassName(styleName);
+        }
+    }
+
+    /**
+     * Returns the element of a cell
+     */
+    TableCellElement getCellElement(int row, int column) {
+        return cells[row * columns + column];
+    }
+
+    /**
+     * Returns the index of the cell an event targets as row * columns +
+     * column or -1 if the event does not target a cell of this table
+     */
+    int getCellIndex(NativeEvent event) {
+        EventTarget target = event.getEventTarget();
+        if (!Element.is(target)) {
+            return -1;
+        }
+        for (Element e = Element.as(target); e != null && e != table; e = e
+                .getParentElement()) {
+            if (TableCellElement.TAG_TD.equalsIgnoreCase(e.getTagName())) {
+                Element row = e.getParentElement();
+                if (row.getParentElement().getParentElement() == table) {
+                    return TableRowElement.as(row).getRowIndex() * columns
+                            + TableCellElement.as(e).getCellIndex();
+                }
+            }
+        }
+        return -1;
+    }
+}
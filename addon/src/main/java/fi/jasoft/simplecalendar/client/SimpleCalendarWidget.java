@@ -15,13 +15,21 @@
  */
 package fi.jasoft.simplecalendar.client;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NativeEvent;
 import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.event.dom.client.BlurEvent;
@@ -36,8 +44,8 @@ import com.google.gwt.event.dom.client.KeyDownEvent;
 import com.google.gwt.event.dom.client.KeyDownHandler;
 import com.google.gwt.event.dom.client.MouseDownEvent;
 import com.google.gwt.event.dom.client.MouseDownHandler;
-import com.google.gwt.i18n.client.DateTimeFormat;
-import com.google.gwt.user.client.Window;
+import com.google.gwt.safehtml.shared.SafeHtmlUtils;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.Grid;
 import com.google.gwt.user.client.ui.HTML;
@@ -51,6 +59,13 @@ import com.vaadin.client.LocaleNotLoadedException;
 import com.vaadin.client.Util;
 import com.vaadin.client.ui.FocusableFlowPanel;
 
+import fi.jasoft.simplecalendar.shared.Day;
+import fi.jasoft.simplecalendar.shared.DaySet;
+import fi.jasoft.simplecalendar.shared.MonthCells;
+import fi.jasoft.simplecalendar.shared.MonthLayout;
+import fi.jasoft.simplecalendar.shared.RecurrenceRule;
+import fi.jasoft.simplecalendar.shared.RecurrenceRuleSet;
+
 public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHandler,
         FocusHandler, BlurHandler, KeyDownHandler, MouseDownHandler {
 
@@ -58,6 +73,22 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     private static final int COLUMNS = 7;
 
     private static final String STYLENAME = "date-panel";
+    private static final String GRID_STYLENAME = STYLENAME + "-grid";
+
+    // Parts of the calendar which are rendered separately
+    private static final int RENDER_WEEKDAYS = 1;
+    private static final int RENDER_HEADER = 2;
+    private static final int RENDER_CELLS = 4;
+    private static final int RENDER_ALL = RENDER_WEEKDAYS | RENDER_HEADER
+            | RENDER_CELLS;
+
+    // The cell flags which are shown as style names and their suffixes
+    private static final int[] CELL_FLAGS = { MonthCells.PREVIOUS_MONTH,
+            MonthCells.NEXT_MONTH, MonthCells.FOCUS_DAY, MonthCells.TODAY,
+            MonthCells.SELECTED, MonthCells.DISABLED };
+    private static final String[] CELL_FLAG_STYLES = { "-day-previous-month",
+            "-day-next-month", "-day-selected", "-day-today", "-selected",
+            "-disabled" };
 
     private Button prevMonth;
     private Button prevYear;
@@ -67,7 +98,10 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     private HTML monthAndYear;
 
     private HorizontalPanel controls;
+
+    // The days are shown either in a grid of widgets or in a plain table
     private Grid grid;
+    private MonthTable table;
 
     private int day;
     private int month;
@@ -79,18 +113,114 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     private Date today = new Date();
 
     private Date lastSelection;
+
+    // The selected dates at midnight and their epoch days for lookups
     private Set<Date> selected = new HashSet<Date>();
+    private final DaySet selectedDays = new DaySet();
+
+    // Range selected with shift-click, kept as its first and last date
+    private Date rangeStart;
+    private Date rangeEnd;
+    private int rangeStartDay;
+    private int rangeEndDay;
+    private final Set<Date> unselectedInRange = new HashSet<Date>();
+    private final DaySet unselectedDaysInRange = new DaySet();
+
+    private final Set<Date> selection = new Selection();
+
+    // Selection changes since the changes were last cleared
+    private final Set<Date> addedDates = new HashSet<Date>();
+    private final Set<Date> removedDates = new HashSet<Date>();
+    private boolean selectionReset = false;
+
+    // Delay of coalesced selection changes in milliseconds, zero to wait for
+    // blur and negative to notify listeners of each change immediately
+    private int selectionCoalescingDelay = -1;
+    private boolean selectionChangePending = false;
+    private boolean selectionInProgress = false;
+    private boolean focused = false;
+
+    private final Timer selectionTimer = new Timer() {
+
+        @Override
+        public void run() {
+            flushSelectionChanges(true);
+        }
+    };
 
     private boolean isMultiSelect = false;
 
     private Date startDate = null;
     private Date endDate = null;
 
-    private Date[] disabledDates;
-    private int[] disabledWeekdays;
-    private int[] disabledMonthDates;
+    // The start and end dates as epoch days
+    private int startDay = Integer.MIN_VALUE;
+    private int endDay = Integer.MAX_VALUE;
+
+    // Disabled dates as epoch days. The dates of shared rules are kept
+    // apart so that patches of the own dates do not enable shared dates.
+    private final DaySet disabledDates = new DaySet();
+    private final DaySet sharedDisabledDates = new DaySet();
+
+    // Bit n is set when weekday n or day n of month is disabled
+    private int disabledWeekdayMask;
+    private int disabledMonthDateMask;
+
+    private RecurrenceRuleSet disabledRecurrenceRules = new RecurrenceRuleSet(null);
+
+    // Disabled days set per month, kept as the days and the months they are
+    // set for as year * 12 + month -> bit mask of days
+    private final DaySet disabledDaysOfMasks = new DaySet();
+    private final Map<Integer, Integer> disabledDayMasks = new HashMap<Integer, Integer>();
+
+    private int notifiedMonth = Integer.MIN_VALUE;
+
+    // Labels and style keys per month as year * 12 + month, index 0 is the
+    // first day of the month
+    private final Map<Integer, String[]> metadataLabels = new HashMap<Integer, String[]>();
+    private final Map<Integer, String[]> metadataStyleKeys = new HashMap<Integer, String[]>();
+
+    // The rendered state of the cells and the state being computed
+    private MonthCells renderedCells = new MonthCells();
+    private MonthCells nextCells = new MonthCells();
+
+    // Rebinds all cells on the next render, e.g. to update their tooltips
+    private boolean cellsInvalidated = false;
+
+    private final MonthCells.DayStates dayStates = new MonthCells.DayStates() {
+
+        @Override
+        public boolean isVisible(int epochDay) {
+            return withinDateRange(epochDay);
+        }
+
+        @Override
+        public boolean isSelected(int epochDay) {
+            return dateIsSelected(epochDay);
+        }
+
+        @Override
+        public boolean isDisabled(int epochDay) {
+            return dateIsDisabled(epochDay);
+        }
+
+        @Override
+        public String getLabel(int epochDay) {
+            return getMetadata(metadataLabels, epochDay);
+        }
+
+        @Override
+        public String getStyleKey(int epochDay) {
+            return getMetadata(metadataStyleKeys, epochDay);
+        }
+    };
+
+    // The index of the cell with keyboard focus or -1
+    private int focusedIndex = -1;
 
-    private DateCell focusedCell;
+    // The parts which have changed since they were last rendered
+    private int dirtyParts = RENDER_ALL;
+    private boolean renderScheduled = false;
     
     private String previousHeight;
 
@@ -98,8 +228,49 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
 
     private final Set<DateValueChangeListener> valueChangeListeners = new HashSet<DateValueChangeListener>();
 
+    private final Set<DisplayedMonthChangeListener> monthChangeListeners = new HashSet<DisplayedMonthChangeListener>();
+
     private final DateTimeService dts = new DateTimeService();
+
+    // Captions of the locale of dts
+    private DateCaptions captions = DateCaptions.get(dts);
     
+    /**
+     * Set view of all selected dates. The dates of the selected range are only
+     * expanded when the view is iterated.
+     */
+    private class Selection extends AbstractSet<Date> {
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Date && dateIsSelected((Date) o);
+        }
+
+        @Override
+        public Iterator<Date> iterator() {
+            List<Date> dates = new ArrayList<Date>(selected);
+            if (rangeStart != null) {
+                int last = Day.fromLocalDate(rangeEnd);
+                for (int epochDay = Day.fromLocalDate(rangeStart); epochDay <= last; epochDay++) {
+                    if (!unselectedDaysInRange.contains(epochDay)
+                            && !dateIsDisabled(epochDay)) {
+                        dates.add(Day.toLocalDate(epochDay));
+                    }
+                }
+            }
+            return dates.iterator();
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (Iterator<Date> i = iterator(); i.hasNext(); i.next()) {
+                size++;
+            }
+            return size;
+        }
+    }
+
     /**
      * Represents a cell in the date grid
      */
@@ -108,14 +279,57 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
         private int column;
         private Date date;
 
+        // The shown content and title, only changes are written to the DOM
+        private String html;
+        private String title;
+
         public DateCell(int row, int column, Date date) {
             this.row = row;
             this.column = column;
+            setDate(date);
+        }
+
+        /**
+         * Binds the cell to another date. The cell is hidden when the date is
+         * null.
+         * 
+         * @param date
+         *            The date the cell represents or null
+         */
+        public void setDate(Date date) {
+            boolean changed = this.date == null || date == null
+                    || Day.fromLocalDate(this.date) != Day.fromLocalDate(date);
             this.date = date;
-            setHTML(date.getDate() + "");
-            DateTimeFormat fmt = DateTimeFormat
-                    .getFormat(descriptionDateFormat);
-            setTitle(fmt.format(date));
+            setVisible(date != null);
+            if (date == null) {
+                return;
+            }
+            if (changed) {
+                setContent(date.getDate() + "");
+            }
+            String title = captions.getDescription(descriptionDateFormat,
+                    Day.fromLocalDate(date));
+            if (!title.equals(this.title)) {
+                this.title = title;
+                setTitle(title);
+            }
+        }
+
+        /**
+         * Shows a label below the day number
+         * 
+         * @param label
+         *            The label or null to only show the day number
+         */
+        public void setLabel(String label) {
+            setContent(getCellContent(date.getDate(), label));
+        }
+
+        private void setContent(String html) {
+            if (!html.equals(this.html)) {
+                this.html = html;
+                setHTML(html);
+            }
         }
 
         public int getRow() {
@@ -241,44 +455,128 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
         controls.setCellWidth(nextYear, "35px");
 
         // Create day grid
-        grid = new Grid(ROWS, COLUMNS);
-        grid.setStyleName(getStyleName() + "-grid");
+        grid = createGrid();
+        add(grid);
+
+        displayedMonth = month;
+        displayedYear = year;
+    }
+
+    private Grid createGrid() {
+        Grid grid = new Grid(ROWS, COLUMNS);
+        grid.setStyleName(GRID_STYLENAME);
         grid.setCellSpacing(0);
         grid.setCellPadding(0);
         grid.addClickHandler(this);
         grid.addDomHandler(this, MouseDownEvent.getType());
         grid.setWidth("100%");
-        add(grid);
 
         // Format first row
-        grid.getRowFormatter().setStyleName(0, grid.getStyleName() + "-days");
-        
+        grid.getRowFormatter().setStyleName(0, GRID_STYLENAME + "-days");
+
         // Populate grid with cells
         for (int r = 1; r < ROWS; r++) {
             for (int c = 0; c < COLUMNS; c++) {
                 grid.setHTML(r, c, "");
                 grid.getCellFormatter().setStyleName(r, c,
-                        grid.getStyleName() + "-day");
+                        GRID_STYLENAME + "-day");
                 grid.getCellFormatter().setHeight(r, c, "39px");
             }
-            grid.getRowFormatter().setStyleName(r,
-                    grid.getStyleName() + "-week");
+            grid.getRowFormatter().setStyleName(r, GRID_STYLENAME + "-week");
         }
+        return grid;
+    }
 
-        displayedMonth = month;
-        displayedYear = year;
+    private MonthTable createTable() {
+        MonthTable table = new MonthTable(GRID_STYLENAME, ROWS, COLUMNS);
+
+        // The handlers of the table handle the events of all cells
+        table.addDomHandler(this, ClickEvent.getType());
+        table.addDomHandler(this, MouseDownEvent.getType());
+        return table;
     }
-    
+
+    /**
+     * Shows the days in a plain table instead of a grid of widgets. The table
+     * has the same style names but {@link #createCell(int, int, Date)} is not
+     * used to create its cells. Use this to reduce the amount of widgets when
+     * many calendars are shown at once.
+     * 
+     * @param lightweight
+     *            True to show the days in a table, false to show them in a
+     *            grid of widgets, the default
+     */
+    public void setLightweightRendering(boolean lightweight) {
+        if (lightweight == isLightweightRendering()) {
+            return;
+        }
+        Widget previous = getDayGrid();
+        if (lightweight) {
+            table = createTable();
+            grid = null;
+        } else {
+            grid = createGrid();
+            table = null;
+        }
+        insert(getDayGrid(), getWidgetIndex(previous));
+        remove(previous);
+
+        // Nothing has been rendered to the new cells
+        renderedCells = new MonthCells();
+        if (focused && focusedIndex >= 0) {
+            setCellClassName(focusedIndex / COLUMNS + 1,
+                    focusedIndex % COLUMNS, "focus", true);
+        }
+        if (previousHeight != null) {
+            calculateRowHeights();
+        }
+        scheduleRender(RENDER_ALL);
+    }
+
+    /**
+     * Returns true if the days are shown in a plain table, see
+     * {@link #setLightweightRendering(boolean)}
+     */
+    public boolean isLightweightRendering() {
+        return table != null;
+    }
+
+    /**
+     * Returns the widget showing the days
+     */
+    private Widget getDayGrid() {
+        return table != null ? table : grid;
+    }
+
+    private Element getCellElement(int row, int column) {
+        if (table != null) {
+            return table.getCellElement(row, column);
+        }
+        return grid.getCellFormatter().getElement(row, column);
+    }
+
     private void updateWeekdays(){
         for (int c = 0; c < COLUMNS; c++) {
             int index = (dts.getFirstDayOfWeek() + c) % COLUMNS;
-            String dayName = dts.getShortDay(index);
-            dayName = String.valueOf(Character.toUpperCase(dayName.charAt(0)))
-                    + dayName.substring(1);
-            grid.setHTML(0, c, dayName);
-            grid.getCellFormatter().setStyleName(0, c,
-                    grid.getStyleName() + "-day-caption");
+            if (table != null) {
+                table.setCaption(c, captions.getWeekdayCaption(index));
+            } else {
+                grid.setHTML(0, c, captions.getWeekdayCaption(index));
+                grid.getCellFormatter().setStyleName(0, c,
+                        GRID_STYLENAME + "-day-caption");
+            }
+        }
+    }
+
+    /**
+     * Returns the day of month of the focused cell or 0 if no cell is focused
+     */
+    private int getFocusedDate() {
+        if (focusedIndex < 0
+                || (renderedCells.getFlags(focusedIndex) & MonthCells.VISIBLE) == 0) {
+            return 0;
         }
+        return Day.getDayOfMonth(renderedCells.getDay(focusedIndex));
     }
 
     /**
@@ -286,13 +584,12 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      * UI if necessary
      */
     private void previousDay() {
-        if (focusedCell == null) {
+        int date = getFocusedDate();
+        if (date == 0) {
             // If we have no focus the return
             return;
         }
 
-        int date = focusedCell.getDate().getDate();
-
         if (date == 1) {
             /*
              * If we are at day 1 of a month and go back then we have to jump to
@@ -303,7 +600,7 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
             previousMonth();
 
             // Select last day of month
-            setKeyboardFocus(getDaysInMonth(displayedYear, displayedMonth));
+            setKeyboardFocus(Day.getDaysInMonth(displayedYear, displayedMonth));
 
         } else {
             // Focus the previous day
@@ -312,14 +609,13 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     }
 
     private void nextDay() {
-        if (focusedCell == null) {
+        int date = getFocusedDate();
+        if (date == 0) {
             // If we have no focus the return
             return;
         }
 
-        int daysInMonth = getDaysInMonth(displayedYear, displayedMonth);
-
-        int date = focusedCell.getDate().getDate();
+        int daysInMonth = Day.getDaysInMonth(displayedYear, displayedMonth);
 
         if (date == daysInMonth) {
             /*
@@ -340,35 +636,37 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     }
 
     private void previousWeek() {
-        if (focusedCell == null) {
+        int date = getFocusedDate();
+        if (date == 0) {
             // If we have no focus the return
             return;
         }
 
-        if (focusedCell.getDate().getDate() <= 7) {
+        if (date <= 7) {
+            // The focused cell is rebound to another date by the month change
+            int diff = 7 - date;
             previousMonth();
-
-            int diff = 7 - focusedCell.getDate().getDate();
-            setKeyboardFocus(getDaysInMonth(displayedYear, displayedMonth)
+            setKeyboardFocus(Day.getDaysInMonth(displayedYear, displayedMonth)
                     - diff);
 
         } else {
             // Move focus 7 days backward
-            setKeyboardFocus(focusedCell.getDate().getDate() - 7);
+            setKeyboardFocus(date - 7);
         }
     }
 
     private void nextWeek() {
-        if (focusedCell == null) {
+        int date = getFocusedDate();
+        if (date == 0) {
             // If we have no focus the return
             return;
         }
 
-        int daysInMonth = getDaysInMonth(displayedYear, displayedMonth);
-        if (focusedCell.getDate().getDate() >= daysInMonth - 7) {
+        int daysInMonth = Day.getDaysInMonth(displayedYear, displayedMonth);
+        if (date >= daysInMonth - 7) {
 
             // Calculate how many days we should jump in the next month
-            int diff = daysInMonth - focusedCell.getDate().getDate();
+            int diff = daysInMonth - date;
 
             // Change to next month
             nextMonth();
@@ -378,7 +676,7 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
 
         } else {
             // Move focus 7 days forward
-            setKeyboardFocus(focusedCell.getDate().getDate() + 7);
+            setKeyboardFocus(date + 7);
         }
     }
 
@@ -393,7 +691,8 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
             month = 11;
         }
 
-        if (withinDateRange(new Date(year - 1900, month, 31))) {
+        if (withinDateRange(Day.toEpochDay(year, month,
+                Day.getDaysInMonth(year, month)))) {
             updateUI(year, month, 1);
             nextMonth.setEnabled(true);
         }
@@ -409,7 +708,7 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
             year++;
             month = 0;
         }
-        if (withinDateRange(new Date(year - 1900, month, 1))) {
+        if (withinDateRange(Day.toEpochDay(year, month, 1))) {
             updateUI(year, month, 1);
             prevMonth.setEnabled(true);
         }
@@ -420,7 +719,8 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      */
     private void previousYear() {
         int year = displayedYear - 1;
-        if (withinDateRange(new Date(year - 1900, displayedMonth, 31))) {
+        if (withinDateRange(Day.toEpochDay(year, displayedMonth,
+                Day.getDaysInMonth(year, displayedMonth)))) {
             updateUI(year, displayedMonth, 1);
             nextYear.setEnabled(true);
         }
@@ -431,14 +731,17 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      */
     private void nextYear() {
         int year = displayedYear + 1;
-        if (withinDateRange(new Date(year - 1900, displayedMonth, 1))) {
+        if (withinDateRange(Day.toEpochDay(year, displayedMonth, 1))) {
             updateUI(year, displayedMonth, 1);
             prevYear.setEnabled(true);
         }
     }
 
     /**
-     * Creates a date cell in the grid. Override this to customize the cells
+     * Creates a date cell in the grid. Cells which are {@link DateCell}s are
+     * created once and rebound to other dates with
+     * {@link DateCell#setDate(Date)}, other widgets are created again when
+     * the day of the cell changes. Override this to customize the cells
      * 
      * @param row
      *            The row of the cell
@@ -453,14 +756,14 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     }
 
     private void calculateRowHeights() {
-        int totalHeight = Util.getRequiredHeight(this) - Util.measureVerticalPaddingAndBorder(grid.getElement(), 10); 
+        int totalHeight = Util.getRequiredHeight(this) - Util.measureVerticalPaddingAndBorder(getDayGrid().getElement(), 10); 
         double rowHeight = totalHeight / ROWS;
 
         for (int r = 0; r < ROWS; r++) {
             for (int c = 0; c < COLUMNS; c++) {
                 if (r > 0) {
-                    grid.getCellFormatter().getElement(r, c).getStyle()
-                            .setHeight(rowHeight, Unit.PX);
+                    getCellElement(r, c).getStyle().setHeight(rowHeight,
+                            Unit.PX);
                 }
             }
         }
@@ -481,59 +784,56 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     }
 
     private void setKeyboardFocus(int row, int column) {
-        if (focusedCell != null) {
-            grid.getCellFormatter().removeStyleName(focusedCell.getRow(),
-                    focusedCell.getColumn(), "focus");
+        if (focusedIndex >= 0) {
+            setCellClassName(focusedIndex / COLUMNS + 1,
+                    focusedIndex % COLUMNS, "focus", false);
         }
 
-        try {
-            focusedCell = (DateCell) grid.getWidget(row, column);
-        } catch (IndexOutOfBoundsException ioobe) {
-            Window.alert(ioobe + "");
-            return;
-        }
+        // Only cells showing a date can be focused
+        int index = (row - 1) * COLUMNS + column;
+        boolean visible = (renderedCells.getFlags(index) & MonthCells.VISIBLE) != 0;
+        focusedIndex = visible ? index : -1;
 
-        if (focusedCell != null) {
-            grid.getCellFormatter().addStyleName(focusedCell.getRow(),
-                    focusedCell.getColumn(), "focus");
+        if (focusedIndex >= 0) {
+            setCellClassName(row, column, "focus", true);
         }
     }
 
     private void setKeyboardFocus(int date) {
-        for (int row = 1; row < grid.getRowCount(); row++) {
-            for (int col = 0; col < grid.getColumnCount(); col++) {
-                DateCell cell = (DateCell) grid.getWidget(row, col);
-                if (cell != null) {
-                    Date d = cell.getDate();
-                    if (d != null) {
-                        int month = d.getMonth();
-                        int day = d.getDate();
-                        if (month == displayedMonth && day == date) {
-                            setKeyboardFocus(row, col);
-                            return;
-                        }
-                    }
-                }
+        for (int i = 0; i < MonthLayout.CELLS; i++) {
+            int epochDay = renderedCells.getDay(i);
+            if ((renderedCells.getFlags(i) & MonthCells.VISIBLE) != 0
+                    && Day.getMonth(epochDay) == displayedMonth
+                    && Day.getDayOfMonth(epochDay) == date) {
+                setKeyboardFocus(i / COLUMNS + 1, i % COLUMNS);
+                return;
             }
         }
     }
 
-    private void select(DateCell dc, boolean ctrl, boolean shift) {
-        Date date = dc.getDate();
+    /**
+     * Selects the date of a cell
+     * 
+     * @param index
+     *            The index of the cell in the rendered cells
+     */
+    private void select(int index, boolean ctrl, boolean shift) {
+        int epochDay = renderedCells.getDay(index);
+        Date date = Day.toLocalDate(epochDay);
 
         // Abort if disabled
-        if (dateIsDisabled(date)) {
+        if (dateIsDisabled(epochDay)) {
             return;
         }
 
         // Set keyboard focus
-        focusedCell = dc;
+        focusedIndex = index;
 
         if (isMultiSelect && ctrl) {
             if (dateIsSelected(date)) {
                 unselect(date, false);
             } else {
-                select(date);
+                select(date, false);
             }
 
             fireValueChangeEvent();
@@ -544,12 +844,14 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
             // Select a range
             if (lastSelection != null) {
                 if (lastSelection.after(date)) {
-                    selected.addAll(GwtDateUtil.getDatesBetween(date,
-                            lastSelection));
+                    rangeStart = date;
+                    rangeEnd = lastSelection;
                 } else {
-                    selected.addAll(GwtDateUtil.getDatesBetween(lastSelection,
-                            date));
+                    rangeStart = lastSelection;
+                    rangeEnd = date;
                 }
+                rangeStartDay = Day.fromLocalDate(rangeStart);
+                rangeEndDay = Day.fromLocalDate(rangeEnd);
 
                 updateUI(displayedYear, displayedMonth, 1);
             }
@@ -566,7 +868,7 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
                 removeSelections();
 
                 // Select date
-                select(date);
+                select(date, false);
             }
 
             fireValueChangeEvent();
@@ -580,269 +882,384 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
             return;
         }
 
-        Cell cell = grid.getCellForEvent(event);
-        Widget w = grid.getWidget(cell.getRowIndex(), cell.getCellIndex());
-        setKeyboardFocus(cell.getRowIndex(), cell.getCellIndex());
+        int row;
+        int column;
+        if (table != null) {
+            int index = table.getCellIndex(event.getNativeEvent());
+            if (index < 0) {
+                return;
+            }
+            row = index / COLUMNS;
+            column = index % COLUMNS;
+        } else {
+            Cell cell = grid.getCellForEvent(event);
+            if (cell == null) {
+                return;
+            }
+            row = cell.getRowIndex();
+            column = cell.getCellIndex();
+        }
+        if (row == 0) {
+            // Weekday captions
+            return;
+        }
 
-        if (w instanceof DateCell) {
-            DateCell dc = (DateCell) w;
-            select(dc, isControlClick(event), event.isShiftKeyDown());
+        setKeyboardFocus(row, column);
+        if (focusedIndex >= 0) {
+            select(focusedIndex, isControlClick(event), event.isShiftKeyDown());
         }
     }
 
     private void removeSelections() {
-        for (int r = 1; r < ROWS; r++) {
-            for (int c = 0; c < COLUMNS; c++) {
-                grid.getCellFormatter().removeStyleName(r, c,
-                        grid.getStyleName() + "-selected");
-            }
-        }
+        clearSelection();
+        updateUI();
+    }
+
+    private void clearSelection() {
         selected.clear();
+        selectedDays.clear();
+        rangeStart = null;
+        rangeEnd = null;
+        unselectedInRange.clear();
+        unselectedDaysInRange.clear();
+        addedDates.clear();
+        removedDates.clear();
+        selectionReset = true;
     }
 
-    private static boolean withinDateRange(Date date, Date startDate,
-            Date endDate) {
-        boolean isAfterStartDate = false;
-        if (startDate == null
-                || GwtDateUtil.dateEqualResolutionDay(startDate, date)
-                || startDate.before(date)) {
-            isAfterStartDate = true;
+    /**
+     * Selects a day. The selected dates are kept at midnight so that each day
+     * is represented by one equal date.
+     */
+    private void addSelection(int epochDay) {
+        Date date = Day.toLocalDate(epochDay);
+        boolean added;
+        if (isInSelectedRange(epochDay)) {
+            added = unselectedDaysInRange.remove(epochDay)
+                    && unselectedInRange.remove(date);
+        } else {
+            added = selectedDays.add(epochDay) && selected.add(date);
+        }
+        if (added && !selectionReset && !removedDates.remove(date)) {
+            addedDates.add(date);
         }
+    }
 
-        boolean isBeforeEndDate = false;
-        if (endDate == null
-                || GwtDateUtil.dateEqualResolutionDay(endDate, date)
-                || endDate.after(date)) {
-            isBeforeEndDate = true;
+    private boolean removeSelection(int epochDay) {
+        Date date = Day.toLocalDate(epochDay);
+        boolean removed;
+        if (isInSelectedRange(epochDay)) {
+            removed = unselectedDaysInRange.add(epochDay)
+                    && unselectedInRange.add(date);
+        } else {
+            removed = selectedDays.remove(epochDay) && selected.remove(date);
+        }
+        if (removed && !selectionReset && !addedDates.remove(date)) {
+            removedDates.add(date);
         }
+        return removed;
+    }
 
-        return isAfterStartDate && isBeforeEndDate;
+    private boolean isInSelectedRange(int epochDay) {
+        return rangeStart != null && epochDay >= rangeStartDay
+                && epochDay <= rangeEndDay;
     }
 
     private boolean withinDateRange(Date date) {
-        return withinDateRange(date, startDate, endDate);
+        return withinDateRange(Day.fromLocalDate(date));
+    }
+
+    private boolean withinDateRange(int epochDay) {
+        return epochDay >= startDay && epochDay <= endDay;
     }
 
     private boolean isWeekdayDisabled(int weekday) {
-        if (disabledWeekdays != null) {
-            for (int i = 0; i < disabledWeekdays.length; i++) {
-                if (disabledWeekdays[i] == weekday) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return (disabledWeekdayMask & 1 << weekday) != 0;
     }
 
     private boolean isMonthDateDisabled(int date) {
-        if (disabledMonthDates != null) {
-            for (int i = 0; i < disabledMonthDates.length; i++) {
-                if (disabledMonthDates[i] == date) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return (disabledMonthDateMask & 1 << date) != 0;
     }
 
-    private boolean isDateDisabled(Date date) {
-        if (disabledDates != null) {
-            for (Date d : disabledDates) {
-                if (GwtDateUtil.dateEqualResolutionDay(d, date)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    private boolean isDateDisabled(int epochDay) {
+        return disabledDates.contains(epochDay)
+                || sharedDisabledDates.contains(epochDay);
     }
 
-    private boolean dateIsDisabled(Date date) {
-        return isDateDisabled(date) || isMonthDateDisabled(date.getDate())
-                || isWeekdayDisabled(date.getDay());
+    /**
+     * Is the day in the displayed month or in an adjacent month whose days
+     * may be visible
+     */
+    private boolean isNearDisplayedMonth(int epochDay) {
+        return Math.abs(Day.getMonthKey(epochDay)
+                - Day.getMonthKey(displayedYear, displayedMonth)) <= 1;
+    }
+
+    private boolean isDayMaskDisabled(int epochDay) {
+        return disabledDaysOfMasks.contains(epochDay);
+    }
+
+    private boolean dateIsDisabled(int epochDay) {
+        return isDateDisabled(epochDay)
+                || (disabledMonthDateMask != 0 && isMonthDateDisabled(Day
+                        .getDayOfMonth(epochDay)))
+                || (disabledWeekdayMask != 0 && isWeekdayDisabled(Day
+                        .getDayOfWeek(epochDay)))
+                || isDayMaskDisabled(epochDay)
+                || disabledRecurrenceRules.matches(epochDay);
     }
 
     private boolean dateIsSelected(Date date) {
-        for (Date d : selected) {
-            if (GwtDateUtil.dateEqualResolutionDay(d, date)) {
-                return true;
-            }
+        return dateIsSelected(Day.fromLocalDate(date));
+    }
+
+    private boolean dateIsSelected(int epochDay) {
+        if (selectedDays.contains(epochDay)) {
+            return true;
         }
-        return false;
+        return isInSelectedRange(epochDay)
+                && !unselectedDaysInRange.contains(epochDay)
+                && !dateIsDisabled(epochDay);
     }
 
+    /**
+     * Renders the cells at the end of the current event loop turn
+     */
     private void updateUI() {
-        Scheduler.get().scheduleEntry(new Scheduler.ScheduledCommand() {
+        scheduleRender(RENDER_CELLS);
+    }
 
-            @Override
-            public void execute() {
-                updateUI(displayedYear, displayedMonth, day);
-            }
-        });
+    /**
+     * Marks parts of the calendar to be rendered at the end of the current
+     * event loop turn. Any number of changes are rendered once.
+     * 
+     * @param parts
+     *            The parts to render, a combination of the RENDER_ flags
+     */
+    private void scheduleRender(int parts) {
+        dirtyParts |= parts;
+        if (!renderScheduled) {
+            renderScheduled = true;
+            Scheduler.get().scheduleFinally(new Scheduler.ScheduledCommand() {
+
+                @Override
+                public void execute() {
+                    renderScheduled = false;
+                    if (dirtyParts != 0) {
+                        render(displayedYear, displayedMonth, day);
+                    }
+                }
+            });
+        }
     }
 
+    /**
+     * Shows a month immediately
+     */
     private void updateUI(int year, int month, int day) {
+        dirtyParts |= RENDER_HEADER | RENDER_CELLS;
+        render(year, month, day);
+    }
+
+    /**
+     * Renders the dirty parts of the calendar, all parts if the displayed
+     * month changes
+     */
+    private void render(int year, int month, int day) {
+        int parts = dirtyParts;
+        dirtyParts = 0;
+
+        if ((parts & RENDER_WEEKDAYS) != 0) {
+            updateWeekdays();
+        }
 
-    	updateWeekdays();
-    	
         displayedMonth = month;
         displayedYear = year;
 
         // Check that the displayed date is within the range
-        Date now = new Date(year - 1900, month, day);
-        if (!withinDateRange(now)) {
+        if (!withinDateRange(Day.toEpochDay(year, month, day))) {
             if (endDate != null) {
-                displayedMonth = endDate.getMonth();
-                displayedYear = endDate.getYear() + 1900;
+                displayedMonth = Day.getMonth(endDay);
+                displayedYear = Day.getYear(endDay);
             } else if (startDate != null) {
-                displayedMonth = startDate.getMonth();
-                displayedYear = startDate.getYear() + 1900;
+                displayedMonth = Day.getMonth(startDay);
+                displayedYear = Day.getYear(startDay);
             }
         }
 
-        prevYear.setEnabled(withinDateRange(new Date(displayedYear - 1900 - 1,
-                displayedMonth, 31)));
-
-        prevMonth.setEnabled(withinDateRange(new Date(displayedYear - 1900,
-                displayedMonth - 1, getDaysInMonth(displayedYear - 1900,
-                        displayedMonth - 1))));
-
-        nextMonth.setEnabled(withinDateRange(new Date(displayedYear - 1900,
-                displayedMonth + 1, 1)));
+        MonthLayout layout = new MonthLayout(displayedYear, displayedMonth,
+                dts.getFirstDayOfWeek());
+        int monthKey = Day.getMonthKey(displayedYear, displayedMonth);
+        if (monthKey != notifiedMonth) {
+            parts |= RENDER_HEADER | RENDER_CELLS;
+        }
 
-        nextYear.setEnabled(withinDateRange(new Date(displayedYear - 1900 + 1,
-                displayedMonth, 1)));
+        if ((parts & RENDER_HEADER) != 0) {
+            renderHeader(layout);
+        }
+        if ((parts & RENDER_CELLS) != 0) {
+            renderCells(layout, day);
+        }
+    }
 
-        Date date = new Date(displayedYear - 1900, displayedMonth, day);
+    /**
+     * Renders the month caption and the navigation buttons
+     */
+    private void renderHeader(MonthLayout layout) {
+        int firstDay = layout.getFirstDay();
+        int monthKey = Day.getMonthKey(displayedYear, displayedMonth);
+
+        prevYear.setEnabled(withinDateRange(layout.getLastDayOfPreviousYear()));
+        prevMonth.setEnabled(withinDateRange(firstDay - 1));
+        nextMonth.setEnabled(withinDateRange(layout.getLastDay() + 1));
+        nextYear.setEnabled(withinDateRange(layout.getFirstDayOfNextYear()));
+
+        if (monthKey != notifiedMonth) {
+            notifiedMonth = monthKey;
+            fireDisplayedMonthChangeEvent();
+        }
        
         // Set month and year
-        String yearName = dts.formatDate(date, "MMMM yyyy");
-        yearName = String.valueOf(Character.toUpperCase(yearName.charAt(0)))
-                + yearName.substring(1);
-        monthAndYear.setHTML(yearName);
-
-        // Populate days
-        int daysInMonth = getDaysInMonth(displayedYear, displayedMonth);
-        int lastMonth = displayedMonth > 0 ? displayedMonth - 1 : 11;
-        int lastYear = displayedMonth > 0 ? displayedYear : displayedYear - 1;
-        int daysInLastMonth = getDaysInMonth(lastYear, lastMonth);
-        int d = 1;
-        int nextMonthDay = 1;
-
-        int firstWeekDay = (new Date(displayedYear - 1900, displayedMonth, 1))
-                .getDay() - dts.getFirstDayOfWeek();
+        monthAndYear.setHTML(captions.getMonthCaption(displayedYear,
+                displayedMonth));
+    }
 
-        for (int r = 1; r < ROWS; r++) {
-            for (int c = 0; c < COLUMNS; c++) {
+    /**
+     * Renders the cells of the month. The state of the cells is computed
+     * first and only the differences to the rendered state are written to
+     * the DOM.
+     */
+    private void renderCells(MonthLayout layout, int day) {
+        MonthCells cells = nextCells;
+        cells.compute(layout, layout.getFirstDay() + day - 1,
+                Day.fromLocalDate(today), dayStates);
+        for (int i = 0; i < MonthLayout.CELLS; i++) {
+            renderCell(i / COLUMNS + 1, i % COLUMNS, cells, i);
+        }
+        nextCells = renderedCells;
+        renderedCells = cells;
+        cellsInvalidated = false;
+    }
 
-                // Clear previous styles and content
-                grid.setHTML(r, c, "");
-                grid.getCellFormatter().removeStyleName(r, c,
-                        grid.getStyleName() + "-day-previous-month");
-                grid.getCellFormatter().removeStyleName(r, c,
-                        grid.getStyleName() + "-day-selected");
-                grid.getCellFormatter().removeStyleName(r, c,
-                        grid.getStyleName() + "-day-next-month");
-                grid.getCellFormatter().removeStyleName(r, c,
-                        grid.getStyleName() + "-day-today");
-                grid.getCellFormatter().removeStyleName(r, c,
-                        grid.getStyleName() + "-selected");
-                grid.getCellFormatter().removeStyleName(r, c,
-                        grid.getStyleName() + "-disabled");
-
-                // Populate cells and add style names
-                if (r == 1 && c < firstWeekDay) {
-                    // Previous month
-                    Date x = new Date(displayedYear - 1900, displayedMonth - 1,
-                            daysInLastMonth - firstWeekDay + c + 1);
-                    if (withinDateRange(x)) {
-                        grid.setWidget(r, c, createCell(r, c, x));
-                        grid.getCellFormatter().addStyleName(r, c,
-                                grid.getStyleName() + "-day-previous-month");
-
-                        // Is the date selected?
-                        if (dateIsSelected(x)) {
-                            grid.getCellFormatter().addStyleName(r, c,
-                                    grid.getStyleName() + "-selected");
-                        }
-
-                        // Is the date disabled?
-                        if (dateIsDisabled(x)) {
-                            grid.getCellFormatter().addStyleName(r, c,
-                                    grid.getStyleName() + "-disabled");
-                        }
-                    }
-                } else if (d <= daysInMonth) {
-                    // This month
-                    Date x = new Date(displayedYear - 1900, displayedMonth, d);
-                    if (withinDateRange(x)) {
-                        grid.setWidget(r, c, createCell(r, c, x));
-
-                        // Style selected date
-                        if (d == day) {
-                            grid.getCellFormatter().addStyleName(r, c,
-                                    grid.getStyleName() + "-day-selected");
-                        }
-
-                        // Add a stylename for todays date
-                        if (displayedMonth - 1900 == today.getYear()
-                                && displayedMonth == today.getMonth()
-                                && d == today.getDate()) {
-                            grid.getCellFormatter().addStyleName(r, c,
-                                    grid.getStyleName() + "-day-today");
-                        }
-
-                        // Is the date selected?
-                        if (dateIsSelected(x)) {
-                            grid.getCellFormatter().addStyleName(r, c,
-                                    grid.getStyleName() + "-selected");
-                        }
-
-                        // Is the date disabled?
-                        if (dateIsDisabled(x)) {
-                            grid.getCellFormatter().addStyleName(r, c,
-                                    grid.getStyleName() + "-disabled");
-                        }
-                    }
-                    d++;
-
-                } else if (withinDateRange(new Date(displayedYear - 1900,
-                        displayedMonth, daysInMonth))) {
-                    // Next month
-                    Date x;
-
-                    if (displayedMonth == 11) {
-                        x = new Date(displayedYear - 1900 + 1, 0, nextMonthDay);
-                    } else {
-                        x = new Date(displayedYear - 1900, displayedMonth + 1,
-                                nextMonthDay);
-                    }
+    /**
+     * Updates the parts of a grid cell which differ from the rendered state
+     */
+    private void renderCell(int row, int column, MonthCells cells, int index) {
+        int epochDay = cells.getDay(index);
+        int flags = cells.getFlags(index);
+        int renderedFlags = renderedCells.getFlags(index);
+        boolean visible = (flags & MonthCells.VISIBLE) != 0;
+
+        boolean rebind = cellsInvalidated
+                || epochDay != renderedCells.getDay(index)
+                || ((flags ^ renderedFlags) & MonthCells.VISIBLE) != 0;
+        if (table != null) {
+            String label = cells.getLabel(index);
+            if (!visible) {
+                if (rebind) {
+                    table.hideDay(row, column);
+                }
+            } else if (rebind
+                    || (label == null ? renderedCells.getLabel(index) != null
+                            : !label.equals(renderedCells.getLabel(index)))) {
+                table.showDay(row, column, epochDay, getCellContent(
+                        Day.getDayOfMonth(epochDay), label), captions
+                        .getDescription(descriptionDateFormat, epochDay));
+            }
+        } else {
+            renderWidgetCell(row, column, cells, index, rebind);
+        }
 
-                    if (withinDateRange(x)) {
-                        grid.setWidget(r, c, createCell(r, c, x));
-                        grid.getCellFormatter().addStyleName(r, c,
-                                grid.getStyleName() + "-day-next-month");
-
-                        // Is the date selected?
-                        if (dateIsSelected(x)) {
-                            grid.getCellFormatter().addStyleName(r, c,
-                                    grid.getStyleName() + "-selected");
-                        }
-
-                        // Is the date disabled?
-                        if (dateIsDisabled(x)) {
-                            grid.getCellFormatter().addStyleName(r, c,
-                                    grid.getStyleName() + "-disabled");
-                        }
-                    }
+        int changed = flags ^ renderedFlags;
+        for (int f = 0; changed != 0 && f < CELL_FLAGS.length; f++) {
+            if ((changed & CELL_FLAGS[f]) != 0) {
+                setCellStyleName(row, column, CELL_FLAG_STYLES[f],
+                        (flags & CELL_FLAGS[f]) != 0);
+            }
+        }
 
-                    nextMonthDay++;
-                }
+        String styleKey = cells.getStyleKey(index);
+        String renderedStyleKey = renderedCells.getStyleKey(index);
+        if (styleKey == null ? renderedStyleKey != null : !styleKey
+                .equals(renderedStyleKey)) {
+            if (renderedStyleKey != null) {
+                setCellStyleName(row, column, "-" + renderedStyleKey, false);
+            }
+            if (styleKey != null) {
+                setCellStyleName(row, column, "-" + styleKey, true);
+            }
+        }
+    }
+
+    /**
+     * Updates the widget of a grid cell, rebinding or creating it when the
+     * shown day changes
+     */
+    private void renderWidgetCell(int row, int column, MonthCells cells,
+            int index, boolean rebind) {
+        int epochDay = cells.getDay(index);
+        boolean visible = (cells.getFlags(index) & MonthCells.VISIBLE) != 0;
+
+        Widget cell = grid.getWidget(row, column);
+        if (rebind) {
+            if (cell instanceof DateCell) {
+                ((DateCell) cell).setDate(visible ? Day.toLocalDate(epochDay)
+                        : null);
+            } else if (visible) {
+                cell = createCell(row, column, Day.toLocalDate(epochDay));
+                grid.setWidget(row, column, cell);
+            } else if (cell != null) {
+                grid.setHTML(row, column, "");
             }
         }
+        if (visible && cell instanceof DateCell) {
+            // Only written to the DOM if the content changes
+            ((DateCell) cell).setLabel(cells.getLabel(index));
+        }
+    }
+
+    /**
+     * Returns the content of a cell as HTML
+     * 
+     * @param dayOfMonth
+     *            The day of month
+     * @param label
+     *            The label shown below the day number or null
+     */
+    private static String getCellContent(int dayOfMonth, String label) {
+        if (label == null) {
+            return String.valueOf(dayOfMonth);
+        }
+        return dayOfMonth + "<span class=\"" + GRID_STYLENAME + "-label\">"
+                + SafeHtmlUtils.htmlEscape(label) + "</span>";
     }
 
-    private static int getDaysInMonth(int year, int month) {
-        return 32 - new Date(year, month, 32).getDate();
+    private void setCellStyleName(int row, int column, String suffix,
+            boolean add) {
+        setCellClassName(row, column, GRID_STYLENAME + suffix, add);
+    }
+
+    private void setCellClassName(int row, int column, String className,
+            boolean add) {
+        if (table != null) {
+            table.setCellStyleName(row, column, className, add);
+        } else if (add) {
+            grid.getCellFormatter().addStyleName(row, column, className);
+        } else {
+            grid.getCellFormatter().removeStyleName(row, column, className);
+        }
+    }
+
+    /**
+     * Returns the metadata of a day or null
+     */
+    private String getMetadata(Map<Integer, String[]> metadata, int epochDay) {
+        if (metadata.isEmpty()) {
+            return null;
+        }
+        String[] values = metadata.get(Day.getMonthKey(epochDay));
+        int index = Day.getDayOfMonth(epochDay) - 1;
+        return values != null && index < values.length ? values[index] : null;
     }
 
     public void setMultiSelect(boolean enabled) {
@@ -855,7 +1272,9 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
 
     public void setStartDate(Date date) {
         this.startDate = date;
-        updateUI();
+        this.startDay = date == null ? Integer.MIN_VALUE : Day
+                .fromLocalDate(date);
+        scheduleRender(RENDER_HEADER | RENDER_CELLS);
     }
 
     public Date getStartDate() {
@@ -864,7 +1283,9 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
 
     public void setEndDate(Date date) {
         this.endDate = date;
-        updateUI();
+        this.endDay = date == null ? Integer.MAX_VALUE : Day
+                .fromLocalDate(date);
+        scheduleRender(RENDER_HEADER | RENDER_CELLS);
     }
 
     public Date getEndDate(Date date) {
@@ -877,7 +1298,7 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      * @param days
      */
     public void setDisabledWeekDays(int... days) {
-        this.disabledWeekdays = days;
+        disabledWeekdayMask = toMask(days);
         updateUI();
     }
 
@@ -887,20 +1308,186 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      * @param dates
      */
     public void setDisabledDates(int... dates) {
-        this.disabledMonthDates = dates;
+        disabledMonthDateMask = toMask(dates);
         updateUI();
     }
 
+    /**
+     * Returns a bit mask where bit n is set for each value n between 0 and 31
+     */
+    private static int toMask(int[] values) {
+        int mask = 0;
+        if (values != null) {
+            for (int value : values) {
+                if (value >= 0 && value < 32) {
+                    mask |= 1 << value;
+                }
+            }
+        }
+        return mask;
+    }
+
     /**
      * Specific disabled dates
      * 
      * @param dates
      */
     public void setDisabledDates(Date... dates) {
-        this.disabledDates = dates;
+        setDays(disabledDates, dates);
+        updateUI();
+    }
+
+    /**
+     * Disabled dates of rules shared by many calendars in addition to the
+     * dates set with {@link #setDisabledDates(Date...)}. Not affected by
+     * {@link #updateDisabledDates(Collection, Collection)}.
+     * 
+     * @param dates
+     */
+    public void setSharedDisabledDates(Date... dates) {
+        setDays(sharedDisabledDates, dates);
         updateUI();
     }
 
+    private static void setDays(DaySet days, Date[] dates) {
+        days.clear();
+        if (dates != null) {
+            for (Date date : dates) {
+                if (date != null) {
+                    days.add(Day.fromLocalDate(date));
+                }
+            }
+        }
+    }
+
+    /**
+     * Disables dates in addition to the dates already disabled and removes
+     * disabled dates set with {@link #setDisabledDates(Date...)}. Shared
+     * disabled dates stay disabled. The calendar is redrawn only if a changed
+     * date is visible.
+     * 
+     * @param added
+     *            Dates to disable
+     * @param removed
+     *            Dates to enable again
+     */
+    public void updateDisabledDates(Collection<Date> added,
+            Collection<Date> removed) {
+        boolean visible = false;
+        for (Date date : removed) {
+            if (date != null
+                    && disabledDates.remove(Day.fromLocalDate(date))) {
+                visible |= isNearDisplayedMonth(Day.fromLocalDate(date));
+            }
+        }
+        for (Date date : added) {
+            if (date != null && disabledDates.add(Day.fromLocalDate(date))) {
+                visible |= isNearDisplayedMonth(Day.fromLocalDate(date));
+            }
+        }
+        if (visible) {
+            updateUI();
+        }
+    }
+
+    /**
+     * Rules for recurring disabled days
+     * 
+     * @param rules
+     */
+    public void setDisabledRecurrenceRules(Collection<RecurrenceRule> rules) {
+        this.disabledRecurrenceRules = new RecurrenceRuleSet(rules);
+        updateUI();
+    }
+
+    /**
+     * Sets the disabled days of a month in addition to the other disabled
+     * dates
+     * 
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     * @param mask
+     *            Bit mask where bit n is set when day n of the month is
+     *            disabled
+     */
+    public void setDisabledDays(int year, int month, int mask) {
+        Integer previous = disabledDayMasks.put(year * 12 + month, mask);
+        if (previous == null || previous != mask) {
+            int firstDay = Day.toEpochDay(year, month, 1);
+            int daysInMonth = Day.getDaysInMonth(year, month);
+            for (int day = 1; day <= daysInMonth; day++) {
+                if ((mask & 1 << day) != 0) {
+                    disabledDaysOfMasks.add(firstDay + day - 1);
+                } else {
+                    disabledDaysOfMasks.remove(firstDay + day - 1);
+                }
+            }
+            updateUI();
+        }
+    }
+
+    /**
+     * Removes all disabled days set with
+     * {@link #setDisabledDays(int, int, int)}
+     */
+    public void clearDisabledDays() {
+        disabledDayMasks.clear();
+        disabledDaysOfMasks.clear();
+        updateUI();
+    }
+
+    /**
+     * Sets the labels and style keys of the days of a month. The metadata is
+     * kept when navigating to other months.
+     * 
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     * @param labels
+     *            The labels of the days, index 0 is the first day of the
+     *            month
+     * @param styleKeys
+     *            The style keys of the days, index 0 is the first day of the
+     *            month
+     */
+    public void setDateMetadata(int year, int month, String[] labels,
+            String[] styleKeys) {
+        int monthKey = Day.getMonthKey(year, month);
+        metadataLabels.put(monthKey, labels == null ? new String[0] : labels);
+        metadataStyleKeys.put(monthKey, styleKeys == null ? new String[0]
+                : styleKeys);
+        if (isNearDisplayedMonth(Day.getFirstDayOfMonthKey(monthKey))) {
+            updateUI();
+        }
+    }
+
+    /**
+     * Removes all metadata set with
+     * {@link #setDateMetadata(int, int, String[], String[])}
+     */
+    public void clearDateMetadata() {
+        metadataLabels.clear();
+        metadataStyleKeys.clear();
+        updateUI();
+    }
+
+    /**
+     * Returns the displayed year
+     */
+    public int getDisplayedYear() {
+        return displayedYear;
+    }
+
+    /**
+     * Returns the displayed month (0-11)
+     */
+    public int getDisplayedMonth() {
+        return displayedMonth;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -909,9 +1496,10 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      * .dom.client.FocusEvent)
      */
     public void onFocus(FocusEvent event) {
+        focused = true;
         addStyleDependentName("focused");
-        if (focusedCell != null) {
-            setKeyboardFocus(focusedCell.getRow(), focusedCell.getColumn());
+        if (getFocusedDate() != 0) {
+            setKeyboardFocus(focusedIndex / COLUMNS + 1, focusedIndex % COLUMNS);
         } else {
             setKeyboardFocus(1);
         }
@@ -925,11 +1513,24 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      * .dom.client.BlurEvent)
      */
     public void onBlur(BlurEvent event) {
+        focused = false;
         removeStyleDependentName("focused");
-        if (focusedCell != null) {
-            grid.getCellFormatter().removeStyleName(focusedCell.getRow(),
-                    focusedCell.getColumn(), "focus");
+        if (focusedIndex >= 0) {
+            setCellClassName(focusedIndex / COLUMNS + 1,
+                    focusedIndex % COLUMNS, "focus", false);
         }
+        flushSelectionChanges(false);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.google.gwt.user.client.ui.Widget#onDetach()
+     */
+    @Override
+    protected void onDetach() {
+        flushSelectionChanges(false);
+        super.onDetach();
     }
 
     /*
@@ -987,8 +1588,8 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
             break;
         case KeyCodes.KEY_ENTER:
         case 32: { // SPACE
-            if (focusedCell != null) {
-                select(focusedCell, event.isControlKeyDown() || event.isMetaKeyDown(),
+            if (getFocusedDate() != 0) {
+                select(focusedIndex, event.isControlKeyDown() || event.isMetaKeyDown(),
                         event.isShiftKeyDown());
                 event.preventDefault();
             }
@@ -1037,14 +1638,78 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     }
 
     /**
-     * Returns the selected dates, see also {@link #getSelectedDateRange()}
+     * Returns the selected dates, see also {@link #getSelectedDateRange()}.
+     * The dates of a selected range are expanded each time the returned set is
+     * iterated.
      * 
      * @return
      */
     public Set<Date> getSelectedDates() {
+        return selection;
+    }
+
+    /**
+     * Returns the range selected with shift-click as an array of the first
+     * and last date of the range or null if no range has been selected. Dates
+     * of the range can be unselected individually, see
+     * {@link #getUnselectedDatesInRange()}.
+     */
+    public Date[] getSelectedDateRange() {
+        if (rangeStart == null) {
+            return null;
+        }
+        return new Date[] { rangeStart, rangeEnd };
+    }
+
+    /**
+     * Returns the dates of the selected range which have been unselected
+     */
+    public Set<Date> getUnselectedDatesInRange() {
+        return unselectedInRange;
+    }
+
+    /**
+     * Returns the dates which have been selected outside of the selected range
+     */
+    public Set<Date> getIndividuallySelectedDates() {
         return selected;
     }
 
+    /**
+     * Returns the dates which have been selected since the selection changes
+     * were last cleared, see {@link #clearSelectionChanges()}
+     */
+    public Set<Date> getAddedDates() {
+        return addedDates;
+    }
+
+    /**
+     * Returns the dates which have been unselected since the selection changes
+     * were last cleared, see {@link #clearSelectionChanges()}
+     */
+    public Set<Date> getRemovedDates() {
+        return removedDates;
+    }
+
+    /**
+     * Returns true if the whole selection has been cleared since the selection
+     * changes were last cleared. The added and removed dates are not tracked
+     * after the selection has been reset.
+     */
+    public boolean isSelectionReset() {
+        return selectionReset;
+    }
+
+    /**
+     * Clears the tracked selection changes, called after the changes have been
+     * sent to the server
+     */
+    public void clearSelectionChanges() {
+        addedDates.clear();
+        removedDates.clear();
+        selectionReset = false;
+    }
+
     /**
      * Select a new date in the calendar
      * 
@@ -1054,12 +1719,9 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      * 		Should a valuechange event be fired whne the value changes
      */
     public void select(Date date, boolean fireValueChangeEvent) {
-        Date d = (Date) date.clone();
-        d.setHours(0);
-        d.setMinutes(0);
-        d.setSeconds(0);
-        selected.add(d);
-        lastSelection = d;
+        int epochDay = Day.fromLocalDate(date);
+        addSelection(epochDay);
+        lastSelection = Day.toLocalDate(epochDay);
         updateUI();
         if (fireValueChangeEvent) {
             fireValueChangeEvent();
@@ -1077,15 +1739,7 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     }
 
     protected void unselect(Date date, boolean fireValueChangeEvent) {
-        Set<Date> removed = new HashSet<Date>();
-        for (Date d : selected) {
-            if (GwtDateUtil.dateEqualResolutionDay(d, date)) {
-                removed.add(d);
-            }
-        }
-
-        if (!removed.isEmpty()) {
-            selected.removeAll(removed);
+        if (removeSelection(Day.fromLocalDate(date))) {
             updateUI();
             if (fireValueChangeEvent) {
                 fireValueChangeEvent();
@@ -1107,20 +1761,84 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      * Remove all selections
      */
     public void unselectAll() {
-        selected.clear();
+        clearSelection();
         updateUI();
         fireValueChangeEvent();
     }
 
     /**
-     * Fires a value change event with the current selection
+     * Fires a value change event with the current selection. When selection
+     * changes are coalesced the event is fired when the coalescing delay has
+     * passed or the calendar loses focus.
      */
     protected void fireValueChangeEvent() {
+        if (selectionCoalescingDelay < 0
+                || (selectionCoalescingDelay == 0 && !focused)) {
+            selectionChangePending = true;
+            flushSelectionChanges(false);
+        } else if (!selectionChangePending) {
+            selectionChangePending = true;
+            if (selectionCoalescingDelay > 0) {
+                selectionTimer.schedule(selectionCoalescingDelay);
+            }
+        }
+    }
+
+    /**
+     * Notifies the value change listeners of pending selection changes
+     * 
+     * @param inProgress
+     *            Is the selection still being changed, false when the user is
+     *            done with it. Listeners are notified of a completed selection
+     *            even if there are no pending changes.
+     */
+    private void flushSelectionChanges(boolean inProgress) {
+        selectionTimer.cancel();
+        if (!selectionChangePending && selectionInProgress == inProgress) {
+            return;
+        }
+        selectionChangePending = false;
+        selectionInProgress = inProgress;
         for (DateValueChangeListener listener : valueChangeListeners) {
-            listener.valueChange(this, selected);
+            listener.valueChange(this, selection);
         }
     }
 
+    /**
+     * Sets how selection changes are coalesced before the value change
+     * listeners are notified. With a positive delay the changes made within
+     * the delay from the first change are notified together as a selection
+     * in progress. The selection is completed when the calendar loses focus.
+     * 
+     * @param delay
+     *            The delay in milliseconds, 0 to notify the changes only when
+     *            the calendar loses focus or negative to notify each change
+     *            immediately
+     */
+    public void setSelectionCoalescingDelay(int delay) {
+        selectionCoalescingDelay = delay;
+        if (delay < 0) {
+            flushSelectionChanges(false);
+        }
+    }
+
+    /**
+     * Returns the delay of coalesced selection changes, see
+     * {@link #setSelectionCoalescingDelay(int)}
+     */
+    public int getSelectionCoalescingDelay() {
+        return selectionCoalescingDelay;
+    }
+
+    /**
+     * Returns true while the value change listeners are notified of
+     * coalesced changes the user may still continue, false when the
+     * selection is complete
+     */
+    public boolean isSelectionInProgress() {
+        return selectionInProgress;
+    }
+
     /**
      * Adds a value change listener which listens to when the date selection
      * changes
@@ -1141,6 +1859,35 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
         valueChangeListeners.remove(listener);
     }
 
+    /**
+     * Fires a displayed month change event with the displayed month
+     */
+    protected void fireDisplayedMonthChangeEvent() {
+        for (DisplayedMonthChangeListener listener : monthChangeListeners) {
+            listener.displayedMonthChange(this, displayedYear, displayedMonth);
+        }
+    }
+
+    /**
+     * Adds a listener which listens to when the calendar displays another
+     * month
+     * 
+     * @param listener
+     *            The listener to add
+     */
+    public void addListener(DisplayedMonthChangeListener listener) {
+        monthChangeListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener
+     * 
+     * @param listener
+     */
+    public void removeListener(DisplayedMonthChangeListener listener) {
+        monthChangeListeners.remove(listener);
+    }
+
     /**
      * The format of the date in the tooltip when hoovering over a date
      * 
@@ -1149,6 +1896,8 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
      */
     public void setDescriptionDateFormat(String format) {
         descriptionDateFormat = format;
+        cellsInvalidated = true;
+        updateUI();
     }
 
     /**
@@ -1175,7 +1924,9 @@ public class SimpleCalendarWidget extends FocusableFlowPanel implements ClickHan
     public void setLocale(String locale) {    	
     	try {
 			dts.setLocale(locale);
-			updateUI();
+			captions = DateCaptions.get(dts);
+			cellsInvalidated = true;
+			scheduleRender(RENDER_ALL);
 		} catch (LocaleNotLoadedException e) {			
 			getLogger().log(Level.WARNING, "Could not set locale '"+locale+"'.", e);
 		}    	
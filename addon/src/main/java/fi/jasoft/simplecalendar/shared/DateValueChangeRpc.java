@@ -22,5 +22,46 @@ import com.vaadin.shared.communication.ServerRpc;
 
 public interface DateValueChangeRpc extends ServerRpc{
 
+	/**
+	 * Sends the complete selection. Resets the change sequence to zero.
+	 * 
+	 * @param dates
+	 * 		The selected dates
+	 */
 	public void selected(Set<Date> dates);	
+	
+	/**
+	 * Sends a complete selection consisting of a range of dates. Resets the
+	 * change sequence to zero.
+	 * 
+	 * @param start
+	 * 		The first date of the range
+	 * @param end
+	 * 		The last date of the range
+	 */
+	public void rangeSelected(Date start, Date end);
+	
+	/**
+	 * Sends the dates which were selected and unselected since the previous
+	 * change.
+	 * 
+	 * @param sequence
+	 * 		The sequence number of the change, one larger than the previous
+	 * 		change or one after a complete selection
+	 * @param added
+	 * 		The dates which were selected
+	 * @param removed
+	 * 		The dates which were unselected
+	 */
+	public void changed(int sequence, Set<Date> added, Set<Date> removed);
+	
+	/**
+	 * Marks whether the selection sent after this call is still being changed
+	 * by the user. Sent before the first coalesced change of a selection in
+	 * progress and after the last change when the selection is complete.
+	 * 
+	 * @param inProgress
+	 * 		True if the user is still changing the selection
+	 */
+	public void valueInProgress(boolean inProgress);
 }
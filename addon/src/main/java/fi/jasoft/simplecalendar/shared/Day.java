@@ -0,0 +1,331 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A calendar day without time or time zone, stored as an epoch day, the
+ * number of days since 1970-01-01. Used by both the server and the client so
+ * that they agree on what a day is.
+ * <p>
+ * The static methods work on plain epoch days and do not allocate. Dates are
+ * converted to days only at the edges, either in the local time zone of the
+ * JVM or browser with {@link #fromLocalDate(Date)} or with an explicit UTC
+ * offset with {@link #fromTime(long, int)}.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public final class Day implements Serializable, Comparable<Day> {
+
+    /**
+     * Milliseconds in a day without daylight saving transitions
+     */
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final int epochDay;
+
+    private Day(int epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    /**
+     * Returns the day of an epoch day
+     */
+    public static Day of(int epochDay) {
+        return new Day(epochDay);
+    }
+
+    /**
+     * Returns the day of a calendar date
+     *
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     * @param dayOfMonth
+     *            The day of the month (1-31)
+     */
+    public static Day of(int year, int month, int dayOfMonth) {
+        return new Day(toEpochDay(year, month, dayOfMonth));
+    }
+
+    /**
+     * Returns the day of a date in the local time zone
+     */
+    public static Day ofLocalDate(Date date) {
+        return new Day(fromLocalDate(date));
+    }
+
+    /**
+     * Returns the epoch day
+     */
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * Returns the year
+     */
+    public int getYear() {
+        return getYear(epochDay);
+    }
+
+    /**
+     * Returns the month (0-11)
+     */
+    public int getMonth() {
+        return getMonth(epochDay);
+    }
+
+    /**
+     * Returns the day of the month (1-31)
+     */
+    public int getDayOfMonth() {
+        return getDayOfMonth(epochDay);
+    }
+
+    /**
+     * Returns the day of the week
+     */
+    public Weekday getWeekday() {
+        return Weekday.values()[getDayOfWeek(epochDay)];
+    }
+
+    /**
+     * Returns the day a number of days after this day
+     *
+     * @param days
+     *            The amount of days, negative days count backwards
+     */
+    public Day plusDays(int days) {
+        return days == 0 ? this : new Day(epochDay + days);
+    }
+
+    /**
+     * Returns the midnight of the day in the local time zone
+     */
+    public Date toLocalDate() {
+        return toLocalDate(epochDay);
+    }
+
+    @Override
+    public int compareTo(Day other) {
+        return epochDay < other.epochDay ? -1
+                : (epochDay == other.epochDay ? 0 : 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Day && ((Day) o).epochDay == epochDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return epochDay;
+    }
+
+    /**
+     * Returns the day in ISO-8601 format, for example 2013-12-24
+     */
+    @Override
+    public String toString() {
+        int month = getMonth() + 1;
+        int dayOfMonth = getDayOfMonth();
+        return getYear() + (month < 10 ? "-0" : "-") + month
+                + (dayOfMonth < 10 ? "-0" : "-") + dayOfMonth;
+    }
+
+    /**
+     * Returns the epoch day of a date in the local time zone
+     */
+    @SuppressWarnings("deprecation")
+    public static int fromLocalDate(Date date) {
+        return toEpochDay(date.getYear() + 1900, date.getMonth(),
+                date.getDate());
+    }
+
+    /**
+     * Returns the midnight of an epoch day in the local time zone
+     */
+    @SuppressWarnings("deprecation")
+    public static Date toLocalDate(int epochDay) {
+        return new Date(getYear(epochDay) - 1900, getMonth(epochDay),
+                getDayOfMonth(epochDay));
+    }
+
+    /**
+     * Returns the epoch day of an instant
+     *
+     * @param time
+     *            Milliseconds since 1970-01-01 UTC
+     * @param offset
+     *            The offset of the time zone from UTC in milliseconds at the
+     *            instant
+     */
+    public static int fromTime(long time, int offset) {
+        long local = time + offset;
+        long day = local / MILLIS_PER_DAY;
+        if (local % MILLIS_PER_DAY < 0) {
+            day--;
+        }
+        return (int) day;
+    }
+
+    /**
+     * Returns the day of the week of an epoch day, 0=Sunday and 6=Saturday
+     * like {@link Weekday#ordinal()}
+     */
+    public static int getDayOfWeek(int epochDay) {
+        // 1970-01-01 was a thursday
+        int weekday = (epochDay + 4) % 7;
+        return weekday < 0 ? weekday + 7 : weekday;
+    }
+
+    /**
+     * Returns the day of the month (1-31) of an epoch day
+     */
+    public static int getDayOfMonth(int epochDay) {
+        int dayOfYear = getDayOfYear(epochDay);
+        int mp = (5 * dayOfYear + 2) / 153;
+        return dayOfYear - (153 * mp + 2) / 5 + 1;
+    }
+
+    /**
+     * Returns the month (0-11) of an epoch day
+     */
+    public static int getMonth(int epochDay) {
+        int mp = (5 * getDayOfYear(epochDay) + 2) / 153;
+        return mp < 10 ? mp + 2 : mp - 10;
+    }
+
+    /**
+     * Returns the year of an epoch day
+     */
+    public static int getYear(int epochDay) {
+        int marchYear = getMarchYear(epochDay);
+        // January and February end the year starting from March
+        return getDayOfYear(epochDay, marchYear) < 306 ? marchYear
+                : marchYear + 1;
+    }
+
+    /**
+     * Returns the epoch day of a calendar date
+     *
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     * @param dayOfMonth
+     *            The day of the month (1-31)
+     */
+    public static int toEpochDay(int year, int month, int dayOfMonth) {
+        int m = month + 1;
+        int y = m <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + dayOfMonth - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Returns the amount of days in a month
+     *
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     */
+    public static int getDaysInMonth(int year, int month) {
+        if (month == 1) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0)
+                    || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 3 || month == 5 || month == 8 || month == 10 ? 30
+                : 31;
+    }
+
+    /**
+     * Returns a key identifying a month, year * 12 + month. Consecutive months
+     * have consecutive keys.
+     *
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     */
+    public static int getMonthKey(int year, int month) {
+        return year * 12 + month;
+    }
+
+    /**
+     * Returns the month key of an epoch day, see
+     * {@link #getMonthKey(int, int)}
+     */
+    public static int getMonthKey(int epochDay) {
+        return getMonthKey(getYear(epochDay), getMonth(epochDay));
+    }
+
+    /**
+     * Returns the year of a month key, see {@link #getMonthKey(int, int)}
+     */
+    public static int getYearOfMonthKey(int monthKey) {
+        return monthKey >= 0 ? monthKey / 12 : (monthKey - 11) / 12;
+    }
+
+    /**
+     * Returns the month (0-11) of a month key, see
+     * {@link #getMonthKey(int, int)}
+     */
+    public static int getMonthOfMonthKey(int monthKey) {
+        return monthKey - getYearOfMonthKey(monthKey) * 12;
+    }
+
+    /**
+     * Returns the epoch day of the first day of a month key, see
+     * {@link #getMonthKey(int, int)}
+     */
+    public static int getFirstDayOfMonthKey(int monthKey) {
+        return toEpochDay(getYearOfMonthKey(monthKey),
+                getMonthOfMonthKey(monthKey), 1);
+    }
+
+    // Day of the year starting from March 1st
+    private static int getDayOfYear(int epochDay) {
+        return getDayOfYear(epochDay, getMarchYear(epochDay));
+    }
+
+    private static int getDayOfYear(int epochDay, int marchYear) {
+        return epochDay - toEpochDay(marchYear, 2, 1);
+    }
+
+    // The year starting from March 1st which contains the epoch day
+    private static int getMarchYear(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        return getYearOfEra(z - era * 146097) + era * 400;
+    }
+
+    private static int getYearOfEra(int dayOfEra) {
+        return (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra
+                / 146096) / 365;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+/**
+ * A set of epoch days in an open addressing hash table of ints. Lookups
+ * neither box nor allocate, GWT compiles the table to a plain JavaScript
+ * array. Used by the widget to look up the selected and disabled days of each
+ * cell.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class DaySet {
+
+    // Marks a free slot, never a day of a displayable date
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] table = newTable(INITIAL_CAPACITY);
+
+    private int size;
+
+    /**
+     * Returns true if the set contains a day
+     */
+    public boolean contains(int epochDay) {
+        return size != 0 && epochDay != FREE
+                && table[indexOf(epochDay)] == epochDay;
+    }
+
+    /**
+     * Adds a day to the set
+     *
+     * @return true if the day was not in the set
+     */
+    public boolean add(int epochDay) {
+        if (epochDay == FREE) {
+            throw new IllegalArgumentException("Day out of range");
+        }
+        int index = indexOf(epochDay);
+        if (table[index] == epochDay) {
+            return false;
+        }
+        table[index] = epochDay;
+        size++;
+        if (size * 2 > table.length) {
+            // Keep the table at most half full so that probes stay short
+            int[] old = table;
+            table = newTable(old.length * 2);
+            for (int day : old) {
+                if (day != FREE) {
+                    table[indexOf(day)] = day;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes a day from the set
+     *
+     * @return true if the day was in the set
+     */
+    public boolean remove(int epochDay) {
+        if (!contains(epochDay)) {
+            return false;
+        }
+        int index = indexOf(epochDay);
+        if (table[index] != epochDay) {
+            return false;
+        }
+        // Move back the following days of the probe sequence which could
+        // not be found past the freed slot otherwise
+        int mask = table.length - 1;
+        int next = index;
+        while (true) {
+            next = (next + 1) & mask;
+            int day = table[next];
+            if (day == FREE) {
+                break;
+            }
+            int home = day & mask;
+            boolean movable = index < next ? home <= index || home > next
+                    : home <= index && home > next;
+            if (movable) {
+                table[index] = day;
+                index = next;
+            }
+        }
+        table[index] = FREE;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all days
+     */
+    public void clear() {
+        if (size != 0) {
+            table = newTable(INITIAL_CAPACITY);
+            size = 0;
+        }
+    }
+
+    /**
+     * Returns the amount of days in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the set contains no days
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the slot of a day or the free slot where it would be added
+     */
+    private int indexOf(int epochDay) {
+        int mask = table.length - 1;
+        int index = epochDay & mask;
+        while (table[index] != FREE && table[index] != epochDay) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            table[i] = FREE;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+import com.vaadin.shared.communication.ServerRpc;
+
+public interface DisplayedMonthRpc extends ServerRpc {
+
+	/**
+	 * Notifies the server that the calendar displays another month
+	 * 
+	 * @param year
+	 * 		The displayed year
+	 * @param month
+	 * 		The displayed month (0-11)
+	 */
+	public void monthDisplayed(int year, int month);
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Date arithmetic in the local time zone of the browser or JVM. Used by the
+ * widget and free of GWT dependencies so that it can also be run and measured
+ * on the JVM.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class LocalDateUtil {
+
+    /**
+     * Increments a certain amount of days to a date keeping the time of the
+     * day across daylight saving time transitions. The days are added to the
+     * calendar fields of the date, no formatting or millisecond offsets are
+     * involved.
+     *
+     * @param date
+     *            The date to start from
+     * @param xdays
+     *            The amount of days to increment to a date. Negative days
+     *            counts backwards
+     * @return The new date after incrementation
+     */
+    @SuppressWarnings("deprecation")
+    public static Date incrementDays(Date date, int xdays) {
+        // Date normalizes a day of month outside of the month
+        Date newDate = new Date(date.getYear(), date.getMonth(),
+                date.getDate() + xdays, date.getHours(), date.getMinutes(),
+                date.getSeconds());
+        long millis = date.getTime() % 1000;
+        if (millis < 0) {
+            millis += 1000;
+        }
+        if (millis != 0) {
+            newDate.setTime(newDate.getTime() + millis);
+        }
+        return newDate;
+    }
+
+    /**
+     * Returns a list of dates between two dates including the limits, one
+     * date per day. The dates between the limits have the time of day of the
+     * start date.
+     *
+     * @param start
+     *            The starting date
+     * @param end
+     *            The ending date
+     * @return A list with all dates between the given start and end dates.
+     */
+    public static List<Date> getDatesBetween(Date start, Date end) {
+        List<Date> dates = new ArrayList<Date>();
+        if (!start.before(end)) {
+            dates.add(end);
+            return dates;
+        }
+        int first = Day.fromLocalDate(start);
+        int last = Day.fromLocalDate(end);
+        dates.add(start);
+        for (int day = first + 1; day < last; day++) {
+            dates.add(incrementDays(start, day - first));
+        }
+        dates.add(end);
+        return dates;
+    }
+
+    /**
+     * Checks if two dates are equal while ignoring the time values
+     *
+     * @param d1
+     *            First date to compare
+     * @param d2
+     *            Second date to compare
+     * @return Are the two dates equals
+     */
+    public static boolean dateEqualResolutionDay(Date d1, Date d2) {
+        return Day.fromLocalDate(d1) == Day.fromLocalDate(d2);
+    }
+}
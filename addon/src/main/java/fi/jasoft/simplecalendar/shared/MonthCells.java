@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+/**
+ * The state of the cells of a month grid: the day, flags and metadata of each
+ * cell. Computing the state does not touch the DOM, the widget compares it to
+ * the previously rendered state and only updates the cells which changed.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class MonthCells {
+
+    /**
+     * The day is within the start and end dates, the other flags are only
+     * set for visible cells
+     */
+    public static final int VISIBLE = 1;
+
+    /**
+     * The day belongs to the previous month
+     */
+    public static final int PREVIOUS_MONTH = 1 << 1;
+
+    /**
+     * The day belongs to the next month
+     */
+    public static final int NEXT_MONTH = 1 << 2;
+
+    /**
+     * The day of the displayed month which is shown as the focused day
+     */
+    public static final int FOCUS_DAY = 1 << 3;
+
+    /**
+     * The day is today
+     */
+    public static final int TODAY = 1 << 4;
+
+    /**
+     * The day is selected
+     */
+    public static final int SELECTED = 1 << 5;
+
+    /**
+     * The day is disabled
+     */
+    public static final int DISABLED = 1 << 6;
+
+    /**
+     * Decides the state of the days of the grid
+     */
+    public interface DayStates {
+
+        boolean isVisible(int epochDay);
+
+        boolean isSelected(int epochDay);
+
+        boolean isDisabled(int epochDay);
+
+        /**
+         * Returns the label shown below the day number or null
+         */
+        String getLabel(int epochDay);
+
+        /**
+         * Returns the style key of the day or null
+         */
+        String getStyleKey(int epochDay);
+    }
+
+    private final int[] days = new int[MonthLayout.CELLS];
+
+    private final int[] flags = new int[MonthLayout.CELLS];
+
+    private final String[] labels = new String[MonthLayout.CELLS];
+
+    private final String[] styleKeys = new String[MonthLayout.CELLS];
+
+    /**
+     * Creates the state of an empty grid
+     */
+    public MonthCells() {
+        for (int i = 0; i < days.length; i++) {
+            days[i] = Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Computes the state of the cells
+     *
+     * @param layout
+     *            The layout of the month
+     * @param focusDay
+     *            The epoch day shown as focused if in the month
+     * @param today
+     *            The epoch day of today
+     * @param states
+     *            The state of the days
+     */
+    public void compute(MonthLayout layout, int focusDay, int today,
+            DayStates states) {
+        for (int i = 0; i < MonthLayout.CELLS; i++) {
+            int day = layout.getGridStart() + i;
+            days[i] = day;
+            if (!states.isVisible(day)) {
+                flags[i] = 0;
+                labels[i] = null;
+                styleKeys[i] = null;
+                continue;
+            }
+            int cellFlags = VISIBLE;
+            if (layout.isPreviousMonth(day)) {
+                cellFlags |= PREVIOUS_MONTH;
+            } else if (layout.isNextMonth(day)) {
+                cellFlags |= NEXT_MONTH;
+            } else {
+                if (day == focusDay) {
+                    cellFlags |= FOCUS_DAY;
+                }
+                if (day == today) {
+                    cellFlags |= TODAY;
+                }
+            }
+            if (states.isSelected(day)) {
+                cellFlags |= SELECTED;
+            }
+            if (states.isDisabled(day)) {
+                cellFlags |= DISABLED;
+            }
+            flags[i] = cellFlags;
+            labels[i] = states.getLabel(day);
+            styleKeys[i] = states.getStyleKey(day);
+        }
+    }
+
+    /**
+     * Returns the epoch day of a cell, the cells are in rows of 7 days
+     */
+    public int getDay(int cell) {
+        return days[cell];
+    }
+
+    /**
+     * Returns the flags of a cell
+     */
+    public int getFlags(int cell) {
+        return flags[cell];
+    }
+
+    /**
+     * Returns the label of a cell or null
+     */
+    public String getLabel(int cell) {
+        return labels[cell];
+    }
+
+    /**
+     * Returns the style key of a cell or null
+     */
+    public String getStyleKey(int cell) {
+        return styleKeys[cell];
+    }
+}
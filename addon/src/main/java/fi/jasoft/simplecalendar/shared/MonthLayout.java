@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+/**
+ * The days shown in the six week grid of a month. The grid starts from the
+ * first day of the week on or before the first day of the month and contains
+ * the end of the previous month and the start of the next month.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class MonthLayout {
+
+    /**
+     * The amount of weeks in the grid
+     */
+    public static final int WEEKS = 6;
+
+    /**
+     * The amount of days in the grid
+     */
+    public static final int CELLS = WEEKS * 7;
+
+    private final int year;
+
+    private final int month;
+
+    private final int firstDay;
+
+    private final int lastDay;
+
+    private final int gridStart;
+
+    /**
+     * Creates the layout of a month
+     *
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     * @param firstDayOfWeek
+     *            The first day of the week, 0=Sunday and 6=Saturday
+     */
+    public MonthLayout(int year, int month, int firstDayOfWeek) {
+        this.year = year;
+        this.month = month;
+        firstDay = Day.toEpochDay(year, month, 1);
+        lastDay = firstDay + Day.getDaysInMonth(year, month) - 1;
+        gridStart = firstDay
+                - (Day.getDayOfWeek(firstDay) - firstDayOfWeek + 7) % 7;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Returns the epoch day of the first day of the month
+     */
+    public int getFirstDay() {
+        return firstDay;
+    }
+
+    /**
+     * Returns the epoch day of the last day of the month
+     */
+    public int getLastDay() {
+        return lastDay;
+    }
+
+    /**
+     * Returns the epoch day of the first cell of the grid
+     */
+    public int getGridStart() {
+        return gridStart;
+    }
+
+    /**
+     * Returns the epoch day of the last cell of the grid
+     */
+    public int getGridEnd() {
+        return gridStart + CELLS - 1;
+    }
+
+    /**
+     * Returns the epoch day shown in a cell
+     *
+     * @param week
+     *            The week of the grid (0-5)
+     * @param dayOfWeek
+     *            The column of the grid (0-6)
+     */
+    public int getDay(int week, int dayOfWeek) {
+        return gridStart + week * 7 + dayOfWeek;
+    }
+
+    /**
+     * Returns true if an epoch day belongs to the previous month
+     */
+    public boolean isPreviousMonth(int epochDay) {
+        return epochDay < firstDay;
+    }
+
+    /**
+     * Returns true if an epoch day belongs to the next month
+     */
+    public boolean isNextMonth(int epochDay) {
+        return epochDay > lastDay;
+    }
+
+    /**
+     * Returns the last day of the same month the previous year
+     */
+    public int getLastDayOfPreviousYear() {
+        return Day.getFirstDayOfMonthKey(Day.getMonthKey(year, month) - 11) - 1;
+    }
+
+    /**
+     * Returns the first day of the same month the next year
+     */
+    public int getFirstDayOfNextYear() {
+        return Day.getFirstDayOfMonthKey(Day.getMonthKey(year, month) + 12);
+    }
+}
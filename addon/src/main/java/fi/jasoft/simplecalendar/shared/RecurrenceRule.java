@@ -0,0 +1,354 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+import java.io.Serializable;
+
+/**
+ * A rule for recurring disabled days, for example the last friday of each
+ * month or every other monday. A rule is a handful of numbers no matter how
+ * many years it covers and it is evaluated the same way on the server and the
+ * client.
+ * <p>
+ * Create rules with the static factory methods. The setters are only for
+ * serialization.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public class RecurrenceRule implements Serializable {
+
+    /**
+     * The kind of recurrence
+     */
+    public enum Type {
+
+        /**
+         * The nth weekday of each month, counting from the end if negative
+         */
+        NTH_WEEKDAY_OF_MONTH,
+
+        /**
+         * A weekday every nth week
+         */
+        WEEKLY,
+
+        /**
+         * A day of a month every year
+         */
+        YEARLY
+    }
+
+    private Type type;
+
+    private int weekday;
+
+    private int nth;
+
+    private int interval = 1;
+
+    private int anchorDay;
+
+    private int month;
+
+    private int dayOfMonth;
+
+    private boolean observedOnWeekday;
+
+    private int firstDay = Integer.MIN_VALUE;
+
+    private int lastDay = Integer.MAX_VALUE;
+
+    /**
+     * Constructor for serialization, use the static factory methods instead
+     */
+    public RecurrenceRule() {
+        // Serialization
+    }
+
+    /**
+     * Returns a rule matching the nth weekday of each month
+     *
+     * @param nth
+     *            1 for the first weekday of the month up to 5, -1 for the last
+     *            weekday of the month down to -5
+     * @param weekday
+     *            The weekday
+     */
+    public static RecurrenceRule nthWeekdayOfMonth(int nth, Weekday weekday) {
+        if (nth == 0 || nth < -5 || nth > 5) {
+            throw new IllegalArgumentException(
+                    "nth must be between 1 and 5 or -1 and -5");
+        }
+        RecurrenceRule rule = new RecurrenceRule();
+        rule.type = Type.NTH_WEEKDAY_OF_MONTH;
+        rule.nth = nth;
+        rule.weekday = weekday.ordinal();
+        return rule;
+    }
+
+    /**
+     * Returns a rule matching the last weekday of each month
+     */
+    public static RecurrenceRule lastWeekdayOfMonth(Weekday weekday) {
+        return nthWeekdayOfMonth(-1, weekday);
+    }
+
+    /**
+     * Returns a rule matching a weekday every nth week
+     *
+     * @param weekday
+     *            The weekday
+     * @param interval
+     *            1 for every week, 2 for every other week and so on
+     * @param anchor
+     *            A day the rule matches, must be the given weekday
+     */
+    public static RecurrenceRule weekly(Weekday weekday, int interval,
+            Day anchor) {
+        if (interval < 1) {
+            throw new IllegalArgumentException(
+                    "Interval must be at least one week");
+        }
+        if (anchor.getWeekday() != weekday) {
+            throw new IllegalArgumentException("Anchor must be a "
+                    + weekday);
+        }
+        RecurrenceRule rule = new RecurrenceRule();
+        rule.type = Type.WEEKLY;
+        rule.weekday = weekday.ordinal();
+        rule.interval = interval;
+        rule.anchorDay = anchor.getEpochDay();
+        return rule;
+    }
+
+    /**
+     * Returns a rule matching a day of a month each year
+     *
+     * @param month
+     *            The month (0-11)
+     * @param dayOfMonth
+     *            The day of the month (1-31)
+     */
+    public static RecurrenceRule yearly(int month, int dayOfMonth) {
+        if (month < 0 || month > 11 || dayOfMonth < 1 || dayOfMonth > 31) {
+            throw new IllegalArgumentException("Invalid month or day of month");
+        }
+        RecurrenceRule rule = new RecurrenceRule();
+        rule.type = Type.YEARLY;
+        rule.month = month;
+        rule.dayOfMonth = dayOfMonth;
+        return rule;
+    }
+
+    /**
+     * Returns a copy of the rule which only matches days between two days
+     *
+     * @param first
+     *            The first day or null for no limit
+     * @param last
+     *            The last day or null for no limit
+     */
+    public RecurrenceRule between(Day first, Day last) {
+        RecurrenceRule rule = copy();
+        rule.firstDay = first == null ? Integer.MIN_VALUE : first
+                .getEpochDay();
+        rule.lastDay = last == null ? Integer.MAX_VALUE : last.getEpochDay();
+        return rule;
+    }
+
+    /**
+     * Returns a copy of the rule where a match on saturday or sunday is moved
+     * to the next business day, like public holidays. Evaluated alone the
+     * rule moves the match to the following monday. In a
+     * {@link RecurrenceRuleSet} the match moves to the first weekday after it
+     * which no rule of the set matches, so a holiday observed on a monday
+     * which is itself a holiday moves on to tuesday.
+     */
+    public RecurrenceRule observedOnWeekday() {
+        RecurrenceRule rule = copy();
+        rule.observedOnWeekday = true;
+        return rule;
+    }
+
+    /**
+     * Returns true if the rule alone matches an epoch day, see
+     * {@link RecurrenceRuleSet#matches(int)} for evaluating it with other
+     * rules
+     */
+    public boolean matches(int epochDay) {
+        if (!observedOnWeekday) {
+            return occurs(epochDay);
+        }
+        int weekday = Day.getDayOfWeek(epochDay);
+        if (weekday == 0 || weekday == 6) {
+            return false;
+        }
+        return occurs(epochDay)
+                || (weekday == 1 && (occurs(epochDay - 1) || occurs(epochDay - 2)));
+    }
+
+    /**
+     * Returns the days of a month the rule matches as a bit mask where bit n
+     * is set when day n of the month matches
+     *
+     * @param year
+     *            The year
+     * @param month
+     *            The month (0-11)
+     */
+    public int getMonthMask(int year, int month) {
+        int first = Day.toEpochDay(year, month, 1);
+        int days = Day.getDaysInMonth(year, month);
+        int mask = 0;
+        for (int i = 0; i < days; i++) {
+            if (matches(first + i)) {
+                mask |= 1 << (i + 1);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns true if the rule occurs on an epoch day before a match on a
+     * weekend is moved to a business day
+     */
+    boolean occurs(int epochDay) {
+        if (epochDay < firstDay || epochDay > lastDay || type == null) {
+            return false;
+        }
+        switch (type) {
+        case NTH_WEEKDAY_OF_MONTH:
+            if (Day.getDayOfWeek(epochDay) != weekday) {
+                return false;
+            }
+            int date = Day.getDayOfMonth(epochDay);
+            if (nth > 0) {
+                return (date - 1) / 7 + 1 == nth;
+            }
+            int daysInMonth = Day.getDaysInMonth(Day.getYear(epochDay),
+                    Day.getMonth(epochDay));
+            return (daysInMonth - date) / 7 + 1 == -nth;
+        case WEEKLY:
+            if (Day.getDayOfWeek(epochDay) != weekday) {
+                return false;
+            }
+            int weeks = (epochDay - anchorDay) / 7;
+            return weeks % interval == 0;
+        case YEARLY:
+            return Day.getDayOfMonth(epochDay) == dayOfMonth
+                    && Day.getMonth(epochDay) == month;
+        default:
+            return false;
+        }
+    }
+
+    private RecurrenceRule copy() {
+        RecurrenceRule rule = new RecurrenceRule();
+        rule.type = type;
+        rule.weekday = weekday;
+        rule.nth = nth;
+        rule.interval = interval;
+        rule.anchorDay = anchorDay;
+        rule.month = month;
+        rule.dayOfMonth = dayOfMonth;
+        rule.observedOnWeekday = observedOnWeekday;
+        rule.firstDay = firstDay;
+        rule.lastDay = lastDay;
+        return rule;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getWeekday() {
+        return weekday;
+    }
+
+    public void setWeekday(int weekday) {
+        this.weekday = weekday;
+    }
+
+    public int getNth() {
+        return nth;
+    }
+
+    public void setNth(int nth) {
+        this.nth = nth;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+
+    public int getAnchorDay() {
+        return anchorDay;
+    }
+
+    public void setAnchorDay(int anchorDay) {
+        this.anchorDay = anchorDay;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    public void setMonth(int month) {
+        this.month = month;
+    }
+
+    public int getDayOfMonth() {
+        return dayOfMonth;
+    }
+
+    public void setDayOfMonth(int dayOfMonth) {
+        this.dayOfMonth = dayOfMonth;
+    }
+
+    public boolean isObservedOnWeekday() {
+        return observedOnWeekday;
+    }
+
+    public void setObservedOnWeekday(boolean observedOnWeekday) {
+        this.observedOnWeekday = observedOnWeekday;
+    }
+
+    public int getFirstDay() {
+        return firstDay;
+    }
+
+    public void setFirstDay(int firstDay) {
+        this.firstDay = firstDay;
+    }
+
+    public int getLastDay() {
+        return lastDay;
+    }
+
+    public void setLastDay(int lastDay) {
+        this.lastDay = lastDay;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a list of {@link RecurrenceRule}s. The rules are compiled into a
+ * bit mask per month which is cached, so repeated lookups of the displayed
+ * month cost a map lookup.
+ * <p>
+ * Matches of rules {@link RecurrenceRule#observedOnWeekday() observed on
+ * weekdays} which fall on a weekend move to the first following weekday which
+ * is not matched by any rule of the set or taken by an earlier moved match.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public class RecurrenceRuleSet implements Serializable {
+
+    // Months cached before the cache is cleared
+    private static final int MAX_CACHED_MONTHS = 48;
+
+    // Days before a month whose weekend matches may move into the month
+    private static final int MAX_OBSERVED_SHIFT = 14;
+
+    private final List<RecurrenceRule> rules;
+
+    private final boolean observedRules;
+
+    // Month key -> bit mask of days matched by any rule
+    private final Map<Integer, Integer> masks = new HashMap<Integer, Integer>();
+
+    public RecurrenceRuleSet(Collection<RecurrenceRule> rules) {
+        this.rules = rules == null ? new ArrayList<RecurrenceRule>()
+                : new ArrayList<RecurrenceRule>(rules);
+        boolean observed = false;
+        for (RecurrenceRule rule : this.rules) {
+            observed |= rule.isObservedOnWeekday();
+        }
+        this.observedRules = observed;
+    }
+
+    /**
+     * Returns true if there are no rules
+     */
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Returns the days of a month matched by any rule as a bit mask where bit
+     * n is set when day n of the month matches
+     *
+     * @param monthKey
+     *            The month, see {@link Day#getMonthKey(int, int)}
+     */
+    public int getMonthMask(int monthKey) {
+        if (rules.isEmpty()) {
+            return 0;
+        }
+        Integer mask = masks.get(monthKey);
+        if (mask == null) {
+            int m;
+            if (observedRules) {
+                m = computeObservedMonthMask(monthKey);
+            } else {
+                m = 0;
+                for (RecurrenceRule rule : rules) {
+                    m |= rule.getMonthMask(Day.getYearOfMonthKey(monthKey),
+                            Day.getMonthOfMonthKey(monthKey));
+                }
+            }
+            if (masks.size() >= MAX_CACHED_MONTHS) {
+                masks.clear();
+            }
+            mask = m;
+            masks.put(monthKey, mask);
+        }
+        return mask;
+    }
+
+    /**
+     * Computes the mask of a month when weekend matches of some rules move to
+     * the next free business day. The days are evaluated from a while before
+     * the month so that matches moved into the month are included.
+     */
+    private int computeObservedMonthMask(int monthKey) {
+        int first = Day.getFirstDayOfMonthKey(monthKey);
+        int from = first - MAX_OBSERVED_SHIFT;
+        int to = first
+                + Day.getDaysInMonth(Day.getYearOfMonthKey(monthKey),
+                        Day.getMonthOfMonthKey(monthKey)) - 1;
+        boolean[] disabled = new boolean[to - from + 1];
+
+        // Matches which are not moved claim their days first
+        for (int day = from; day <= to; day++) {
+            for (RecurrenceRule rule : rules) {
+                if (rule.occurs(day)
+                        && (!rule.isObservedOnWeekday() || isBusinessDay(day))) {
+                    disabled[day - from] = true;
+                }
+            }
+        }
+
+        // Weekend matches move to the first free business day in order
+        for (int day = from; day <= to; day++) {
+            if (isBusinessDay(day)) {
+                continue;
+            }
+            for (RecurrenceRule rule : rules) {
+                if (rule.isObservedOnWeekday() && rule.occurs(day)) {
+                    int observed = day + 1;
+                    while (observed <= to
+                            && (!isBusinessDay(observed) || disabled[observed
+                                    - from])) {
+                        observed++;
+                    }
+                    if (observed <= to) {
+                        disabled[observed - from] = true;
+                    }
+                }
+            }
+        }
+
+        int mask = 0;
+        for (int day = first; day <= to; day++) {
+            if (disabled[day - from]) {
+                mask |= 1 << (day - first + 1);
+            }
+        }
+        return mask;
+    }
+
+    private static boolean isBusinessDay(int epochDay) {
+        int weekday = Day.getDayOfWeek(epochDay);
+        return weekday != 0 && weekday != 6;
+    }
+
+    /**
+     * Returns true if any rule matches an epoch day
+     */
+    public boolean matches(int epochDay) {
+        if (rules.isEmpty()) {
+            return false;
+        }
+        return (getMonthMask(Day.getMonthKey(epochDay)) & 1 << Day
+                .getDayOfMonth(epochDay)) != 0;
+    }
+
+    /**
+     * Returns the days within a range matched by any rule
+     *
+     * @param fromDay
+     *            The first epoch day of the range
+     * @param toDay
+     *            The last epoch day of the range, inclusive
+     * @return The matching epoch days in ascending order
+     */
+    public int[] getMatchingDays(int fromDay, int toDay) {
+        if (rules.isEmpty() || fromDay > toDay) {
+            return new int[0];
+        }
+        int[] days = new int[16];
+        int count = 0;
+        int lastMonth = Day.getMonthKey(toDay);
+        for (int key = Day.getMonthKey(fromDay); key <= lastMonth; key++) {
+            int mask = getMonthMask(key);
+            int first = Day.getFirstDayOfMonthKey(key);
+            while (mask != 0) {
+                int day = first + Integer.numberOfTrailingZeros(mask) - 1;
+                mask &= mask - 1;
+                if (day >= fromDay && day <= toDay) {
+                    if (count == days.length) {
+                        int[] grown = new int[count * 2];
+                        System.arraycopy(days, 0, grown, 0, count);
+                        days = grown;
+                    }
+                    days[count++] = day;
+                }
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(days, 0, result, 0, count);
+        return result;
+    }
+}
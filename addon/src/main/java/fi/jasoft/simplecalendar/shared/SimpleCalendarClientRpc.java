@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+import java.util.Date;
+import java.util.List;
+
+import com.vaadin.shared.communication.ClientRpc;
+
+public interface SimpleCalendarClientRpc extends ClientRpc {
+
+	/**
+	 * Requests the client to send the complete selection since the server
+	 * could not apply a change.
+	 */
+	public void resynchronizeSelection();
+	
+	/**
+	 * Sends the disabled days of months provided by a disabled date provider
+	 * 
+	 * @param months
+	 * 		The months as year * 12 + month
+	 * @param masks
+	 * 		The disabled days of each month as a bit mask where bit n is set
+	 * 		when day n of the month is disabled
+	 */
+	public void disabledDays(int[] months, int[] masks);
+	
+	/**
+	 * Discards all disabled days received through
+	 * {@link #disabledDays(int[], int[])}
+	 */
+	public void disabledDaysInvalidated();
+	
+	/**
+	 * Patches the disabled dates of the state
+	 * 
+	 * @param version
+	 * 		The version of the disabled dates after the patch, see
+	 * 		{@link SimpleCalendarState#disabledDatesVersion}
+	 * @param added
+	 * 		Dates which were disabled
+	 * @param removed
+	 * 		Dates which are no longer disabled
+	 */
+	public void disabledDatesChanged(int version, List<Date> added, List<Date> removed);
+	
+	/**
+	 * Sends the date metadata of a month
+	 * 
+	 * @param version
+	 * 		The version of the metadata, see 
+	 * 		{@link SimpleCalendarState#dateMetadataVersion}
+	 * @param month
+	 * 		The month as year * 12 + month
+	 * @param labels
+	 * 		The labels of the days of the month, index 0 is the first day
+	 * @param styleKeys
+	 * 		The style keys of the days of the month, index 0 is the first day
+	 */
+	public void dateMetadata(int version, int month, String[] labels, String[] styleKeys);
+}
@@ -15,7 +15,9 @@
  */
 package fi.jasoft.simplecalendar.shared;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -27,6 +29,7 @@ import com.vaadin.shared.ui.Connect;
 
 import fi.jasoft.simplecalendar.SimpleCalendar;
 import fi.jasoft.simplecalendar.client.DateValueChangeListener;
+import fi.jasoft.simplecalendar.client.DisplayedMonthChangeListener;
 import fi.jasoft.simplecalendar.client.SimpleCalendarWidget;
 
 @Connect(SimpleCalendar.class)
@@ -34,6 +37,15 @@ public class SimpleCalendarConnector extends AbstractComponentConnector {
 
 	private final DateValueChangeRpc valueChangeRpc = RpcProxy.create(DateValueChangeRpc.class, this);
 	
+	private final DisplayedMonthRpc displayedMonthRpc = RpcProxy.create(DisplayedMonthRpc.class, this);
+	
+	private int selectionSequence = 0;
+	
+	private int disabledDatesVersion = 0;
+	
+	// Is the last selection sent to the server still in progress
+	private boolean valueInProgress = false;
+	
 	/*
 	 * (non-Javadoc)
 	 * @see com.vaadin.client.ui.AbstractConnector#init()
@@ -44,9 +56,95 @@ public class SimpleCalendarConnector extends AbstractComponentConnector {
 			
 			@Override
 			public void valueChange(Widget target, Set<Date> dates) {				
-				valueChangeRpc.selected(dates);				
+				SimpleCalendarWidget widget = getWidget();
+				if(widget.isSelectionInProgress() && !valueInProgress){
+					valueInProgress = true;
+					valueChangeRpc.valueInProgress(true);
+				}
+				if(widget.isSelectionReset()){
+					sendSelection();
+				} else if(!widget.getAddedDates().isEmpty() || !widget.getRemovedDates().isEmpty()){
+					valueChangeRpc.changed(++selectionSequence, 
+							new HashSet<Date>(widget.getAddedDates()), 
+							new HashSet<Date>(widget.getRemovedDates()));
+					widget.clearSelectionChanges();
+				}
+				if(!widget.isSelectionInProgress() && valueInProgress){
+					valueInProgress = false;
+					valueChangeRpc.valueInProgress(false);
+				}
+			}
+		});
+		
+		getWidget().addListener(new DisplayedMonthChangeListener() {
+			
+			@Override
+			public void displayedMonthChange(Widget target, int year, int month) {
+				if(getState().disabledDateProvider || getState().dateMetadataVersion != 0){
+					displayedMonthRpc.monthDisplayed(year, month);
+				}
+			}
+		});
+		
+		registerRpc(SimpleCalendarClientRpc.class, new SimpleCalendarClientRpc() {
+			
+			@Override
+			public void resynchronizeSelection() {
+				sendSelection();
+			}
+
+			@Override
+			public void disabledDays(int[] months, int[] masks) {
+				for(int i=0; i<months.length; i++){
+					getWidget().setDisabledDays(Day.getYearOfMonthKey(months[i]), 
+							Day.getMonthOfMonthKey(months[i]), masks[i]);
+				}
+			}
+
+			@Override
+			public void disabledDaysInvalidated() {
+				getWidget().clearDisabledDays();
 			}
-		});						
+
+			@Override
+			public void dateMetadata(int version, int month, String[] labels, String[] styleKeys) {
+				if(version == getState().dateMetadataVersion){
+					getWidget().setDateMetadata(Day.getYearOfMonthKey(month), 
+							Day.getMonthOfMonthKey(month), labels, styleKeys);
+				}
+			}
+
+			@Override
+			public void disabledDatesChanged(int version, List<Date> added, List<Date> removed) {
+				if(version > disabledDatesVersion){
+					disabledDatesVersion = version;
+					getWidget().updateDisabledDates(added, removed);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Sends the complete selection to the server and restarts the change
+	 * sequence
+	 */
+	private void sendSelection() {
+		SimpleCalendarWidget widget = getWidget();
+		Date[] range = widget.getSelectedDateRange();
+		if(range == null){
+			valueChangeRpc.selected(widget.getIndividuallySelectedDates());
+			selectionSequence = 0;
+		} else {
+			// Send the range as its endpoints and the rest as a change to it
+			valueChangeRpc.rangeSelected(range[0], range[1]);
+			selectionSequence = 0;
+			if(!widget.getIndividuallySelectedDates().isEmpty() || !widget.getUnselectedDatesInRange().isEmpty()){
+				valueChangeRpc.changed(++selectionSequence, 
+						new HashSet<Date>(widget.getIndividuallySelectedDates()), 
+						new HashSet<Date>(widget.getUnselectedDatesInRange()));
+			}
+		}
+		widget.clearSelectionChanges();
 	}
 	
 	/*
@@ -79,6 +177,14 @@ public class SimpleCalendarConnector extends AbstractComponentConnector {
 			getWidget().setMultiSelect(getState().multiselect);			
 		}
 		
+		if(stateChangeEvent.hasPropertyChanged("selectionCoalescingDelay")){
+			getWidget().setSelectionCoalescingDelay(getState().selectionCoalescingDelay);
+		}
+		
+		if(stateChangeEvent.hasPropertyChanged("lightweightRendering")){
+			getWidget().setLightweightRendering(getState().lightweightRendering);
+		}
+		
 		if(stateChangeEvent.hasPropertyChanged("startDate")){
 			getWidget().setStartDate(getState().startDate);
 		}
@@ -87,9 +193,9 @@ public class SimpleCalendarConnector extends AbstractComponentConnector {
 			getWidget().setEndDate(getState().endDate);
 		}
 		
-		if(stateChangeEvent.hasPropertyChanged("disabledWeekdays")){
-			List<Weekday> days = getState().disabledWeekdays;
-			if(days == null || days.isEmpty()){
+		if(stateChangeEvent.hasPropertyChanged("disabledWeekdays") || stateChangeEvent.hasPropertyChanged("sharedDisabledWeekdays")){
+			List<Weekday> days = concat(getState().sharedDisabledWeekdays, getState().disabledWeekdays);
+			if(days.isEmpty()){
 				getWidget().setDisabledWeekDays();
 			} else {
 				int[] daysArray = new int[days.size()];
@@ -100,9 +206,9 @@ public class SimpleCalendarConnector extends AbstractComponentConnector {
 			}			
 		}
 		
-		if(stateChangeEvent.hasPropertyChanged("disabledMonthdays")){
-			List<Integer> days = getState().disabledMonthdays;
-			if(days == null || days.isEmpty()){
+		if(stateChangeEvent.hasPropertyChanged("disabledMonthdays") || stateChangeEvent.hasPropertyChanged("sharedDisabledMonthdays")){
+			List<Integer> days = concat(getState().sharedDisabledMonthdays, getState().disabledMonthdays);
+			if(days.isEmpty()){
 				getWidget().setDisabledDates((int[])null);
 			} else {
 				int[] daysArray = new int[days.size()];
@@ -113,21 +219,49 @@ public class SimpleCalendarConnector extends AbstractComponentConnector {
 			}
 		}
 		
-		if(stateChangeEvent.hasPropertyChanged("disabledDates")){
+		if(stateChangeEvent.hasPropertyChanged("disabledDates") || stateChangeEvent.hasPropertyChanged("disabledDatesVersion")){
+			// Patches only change the own dates, the shared dates are kept apart
 			List<Date> days = getState().disabledDates;
-			if(days == null || days.isEmpty()){
-				getWidget().setDisabledDates((Date[])null);
-			} else {
-				Date[] daysArray = new Date[days.size()];
-				for(int i=0; i<days.size(); i++){
-					daysArray[i] = days.get(i);
-				}
-				getWidget().setDisabledDates(daysArray);
+			disabledDatesVersion = getState().disabledDatesVersion;
+			getWidget().setDisabledDates(days == null ? null : days.toArray(new Date[days.size()]));
+		}
+		
+		if(stateChangeEvent.hasPropertyChanged("sharedDisabledDates")){
+			List<Date> days = getState().sharedDisabledDates;
+			getWidget().setSharedDisabledDates(days == null ? null : days.toArray(new Date[days.size()]));
+		}
+		
+		if(stateChangeEvent.hasPropertyChanged("disabledRecurrenceRules")){
+			getWidget().setDisabledRecurrenceRules(getState().disabledRecurrenceRules);
+		}
+		
+		if(stateChangeEvent.hasPropertyChanged("disabledDateProvider") && getState().disabledDateProvider){
+			displayedMonthRpc.monthDisplayed(getWidget().getDisplayedYear(), getWidget().getDisplayedMonth());
+		}
+		
+		if(stateChangeEvent.hasPropertyChanged("dateMetadataVersion")){
+			getWidget().clearDateMetadata();
+			if(getState().dateMetadataVersion != 0){
+				displayedMonthRpc.monthDisplayed(getWidget().getDisplayedYear(), getWidget().getDisplayedMonth());
 			}
-		}		
+		}
 		
 		if(stateChangeEvent.hasPropertyChanged("locale")){	
 			getWidget().setLocale(getState().locale);	
 		}
 	}
+	
+	/**
+	 * Returns the shared rules followed by the rules of this calendar
+	 */
+	private static <T> List<T> concat(List<T> shared, List<T> own){
+		List<T> all = new ArrayList<T>();
+		if(shared != null){
+			all.addAll(shared);
+		}
+		if(own != null){
+			all.addAll(own);
+		}
+		return all;
+	}
 }
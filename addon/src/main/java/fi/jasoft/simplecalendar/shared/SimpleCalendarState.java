@@ -24,12 +24,46 @@ import com.vaadin.shared.AbstractFieldState;
 public class SimpleCalendarState extends AbstractFieldState {
 
 	public boolean multiselect = false;
+	
+	/**
+	 * The delay of coalesced selection changes in milliseconds, zero to send
+	 * the changes on blur and negative to send each change immediately
+	 */
+	public int selectionCoalescingDelay = -1;
+
+	/**
+	 * Are the days rendered as a plain table instead of a grid of widgets
+	 */
+	public boolean lightweightRendering = false;
 
 	public List<Weekday> disabledWeekdays;
     
 	public List<Integer> disabledMonthdays;
     
 	public List<Date> disabledDates;
+	
+	/**
+	 * The version of {@link #disabledDates}, increased each time the disabled
+	 * dates change. Changes are sent as patches which are ignored if the state
+	 * already contains them.
+	 */
+	public int disabledDatesVersion = 0;
+	
+	public List<Weekday> sharedDisabledWeekdays;
+	
+	public List<Integer> sharedDisabledMonthdays;
+	
+	public List<Date> sharedDisabledDates;
+	
+	public List<RecurrenceRule> disabledRecurrenceRules;
+	
+	public boolean disabledDateProvider = false;
+	
+	/**
+	 * The version of the date metadata, zero if there is no metadata provider.
+	 * Metadata of other versions cached by the client is discarded.
+	 */
+	public int dateMetadataVersion = 0;
 
 	public Date startDate;
     
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.ui.UI;
+
+/**
+ * Tests delivering value changes to {@link AsyncValueChangeListener}s while
+ * values keep changing
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class AsyncValueChangeDispatcherTest {
+
+    private static final int BURST = 200;
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Test
+    public void burstWhileListenerIsRunning() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            TestCalendar calendar = new TestCalendar();
+            CountDownLatch burstDone = new CountDownLatch(1);
+            RecordingListener first = new RecordingListener(burstDone);
+            RecordingListener second = new RecordingListener(null);
+            calendar.addAsyncValueChangeListener(first, executor);
+            calendar.addAsyncValueChangeListener(second, executor);
+
+            // The first listener is blocked processing the first value while
+            // the rest of the values change
+            Set<Date> value = new HashSet<Date>();
+            for (int i = 1; i <= BURST; i++) {
+                value.add(new Date(i * 86400000L));
+                synchronized (calendar.ui) {
+                    calendar.setValue(new HashSet<Date>(value));
+                }
+            }
+            burstDone.countDown();
+
+            first.awaitApplied(BURST);
+            second.awaitApplied(BURST);
+            first.assertOrdered();
+            second.assertOrdered();
+
+            assertEquals(Integer.valueOf(BURST), first.getApplied().get(
+                    first.getApplied().size() - 1));
+
+            // The values changed while processing were coalesced
+            assertTrue(first.getProcessed().size() < BURST);
+            assertEquals(Integer.valueOf(1), first.getProcessed().get(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectedValuesAreProcessedInTheCallingThread() throws Exception {
+        TestCalendar calendar = new TestCalendar();
+        RecordingListener listener = new RecordingListener(null);
+        calendar.addAsyncValueChangeListener(listener, new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+
+        Set<Date> value = new HashSet<Date>();
+        for (int i = 1; i <= 10; i++) {
+            value.add(new Date(i * 86400000L));
+            synchronized (calendar.ui) {
+                calendar.setValue(new HashSet<Date>(value));
+            }
+            // Nothing is dropped when processed synchronously
+            assertEquals(i, listener.getProcessed().size());
+            assertEquals(Integer.valueOf(i), listener.getApplied().get(i - 1));
+        }
+        listener.assertOrdered();
+    }
+
+    /**
+     * A UI which runs access tasks in the calling thread holding its lock,
+     * like a session lock
+     */
+    @SuppressWarnings("serial")
+    private static class TestUI extends UI {
+
+        @Override
+        protected void init(VaadinRequest request) {
+            // Not initialized by a request
+        }
+
+        @Override
+        public Future<Void> access(Runnable runnable) {
+            synchronized (this) {
+                runnable.run();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A multiselect calendar attached to a test UI
+     */
+    @SuppressWarnings("serial")
+    private static class TestCalendar extends SimpleCalendar {
+
+        private final TestUI ui = new TestUI();
+
+        TestCalendar() {
+            setMultiSelect(true);
+        }
+
+        @Override
+        public UI getUI() {
+            return ui;
+        }
+    }
+
+    /**
+     * Records the sizes of the values it processes and applies and fails if
+     * called concurrently
+     */
+    @SuppressWarnings("serial")
+    private static class RecordingListener implements
+            AsyncValueChangeListener<Integer> {
+
+        private final CountDownLatch blockFirst;
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private final List<Integer> processed = Collections
+                .synchronizedList(new ArrayList<Integer>());
+
+        private final List<Integer> applied = Collections
+                .synchronizedList(new ArrayList<Integer>());
+
+        private volatile boolean concurrent;
+
+        RecordingListener(CountDownLatch blockFirst) {
+            this.blockFirst = blockFirst;
+        }
+
+        @Override
+        public Integer process(Object value) {
+            if (running.incrementAndGet() > 1) {
+                concurrent = true;
+            }
+            try {
+                if (blockFirst != null && processed.isEmpty()) {
+                    blockFirst.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                int size = ((Set<?>) value).size();
+                processed.add(size);
+                return size;
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void apply(Integer result) {
+            applied.add(result);
+        }
+
+        List<Integer> getProcessed() {
+            return processed;
+        }
+
+        List<Integer> getApplied() {
+            return applied;
+        }
+
+        void awaitApplied(int last) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (!applied.contains(last)) {
+                assertTrue("The last value was not applied, applied "
+                        + applied, System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+
+        void assertOrdered() {
+            assertFalse("Processed concurrently", concurrent);
+            assertIncreasing(processed);
+            assertIncreasing(applied);
+        }
+
+        private static void assertIncreasing(List<Integer> values) {
+            synchronized (values) {
+                for (int i = 1; i < values.size(); i++) {
+                    assertTrue("Out of order " + values,
+                            values.get(i - 1) < values.get(i));
+                }
+            }
+        }
+    }
+}
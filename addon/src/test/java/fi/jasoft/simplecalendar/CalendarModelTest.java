@@ -0,0 +1,336 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import fi.jasoft.simplecalendar.DateValidationResult.Reason;
+import fi.jasoft.simplecalendar.DateValidationResult.RejectedDate;
+import fi.jasoft.simplecalendar.shared.Day;
+
+/**
+ * Tests selection, validation and navigation of {@link CalendarModel}
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class CalendarModelTest {
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Helsinki");
+
+    private static final long HOURS_12 = 12L * 60 * 60 * 1000;
+
+    @Test
+    public void selectInSingleMode() {
+        CalendarModel model = new CalendarModel(ZONE);
+        model.setDisabledDates(march(4));
+
+        assertTrue(model.select(march(1)));
+        assertEquals(march(1), model.getValue());
+
+        // Dates on the selected day do not change the selection
+        assertFalse(model.select(noon(march(1))));
+        assertEquals(march(1), model.getValue());
+
+        assertTrue(model.select(march(2)));
+        assertEquals(march(2), model.getValue());
+
+        assertFalse(model.select(march(4)));
+        assertFalse(model.select(null));
+        assertEquals(march(2), model.getValue());
+
+        assertFalse(model.unselect(march(1)));
+        assertTrue(model.unselect(noon(march(2))));
+        assertNull(model.getValue());
+    }
+
+    @Test
+    public void selectInMultiselectMode() {
+        CalendarModel model = multiselectModel(false);
+        model.setEndDate(march(10));
+
+        assertTrue(model.select(march(1)));
+        assertTrue(model.select(march(3)));
+        assertFalse(model.select(noon(march(3))));
+        assertFalse(model.select(march(11)));
+        assertSelection(model, false, march(1), march(3));
+
+        assertTrue(model.unselect(noon(march(1))));
+        assertFalse(model.unselect(march(2)));
+        assertSelection(model, false, march(3));
+
+        model.clearSelection();
+        assertSelection(model, false);
+    }
+
+    @Test
+    public void selectInRangeCompressedMode() {
+        CalendarModel model = multiselectModel(true);
+        model.setDisabledDates(march(5));
+
+        assertTrue(model.select(march(1)));
+        assertTrue(model.select(march(2)));
+        assertTrue(model.select(march(3)));
+        assertFalse(model.select(march(5)));
+        assertSelection(model, true, march(1), march(2), march(3));
+        assertEquals(1, ((DateRangeSet) model.getValue()).getRangeCount());
+
+        assertTrue(model.unselect(noon(march(2))));
+        assertSelection(model, true, march(1), march(3));
+        assertEquals(2, ((DateRangeSet) model.getValue()).getRangeCount());
+
+        model.clearSelection();
+        assertSelection(model, true);
+    }
+
+    @Test
+    public void switchingToRangeCompressedConvertsTheValue() {
+        CalendarModel model = multiselectModel(false);
+        model.select(march(1));
+        model.select(march(2));
+        model.setRangeCompressedValue(true);
+        assertSelection(model, true, march(1), march(2));
+    }
+
+    @Test
+    public void selectRange() {
+        for (boolean compressed : new boolean[] { false, true }) {
+            CalendarModel model = multiselectModel(compressed);
+            model.setDisabledDates(march(3));
+            model.select(march(20));
+
+            DateRangeSet range = model.selectRange(march(5), march(1));
+            assertEquals(4, range.size());
+            assertSelection(model, compressed, march(1), march(2), march(4),
+                    march(5));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void selectRangeInSingleMode() {
+        new CalendarModel(ZONE).selectRange(march(1), march(5));
+    }
+
+    @Test
+    public void checkValueListsAllInvalidDates() {
+        CalendarModel model = multiselectModel(false);
+        model.setStartDate(march(5));
+        model.setEndDate(march(20));
+        model.setDisabledDates(march(10), march(12));
+
+        Date before = march(1);
+        Date after = march(25);
+        Date disabled = noon(march(10));
+        Date otherDisabled = march(12);
+        try {
+            model.checkValue(Arrays.asList(march(6), after, disabled,
+                    march(15), before, otherDisabled));
+            fail("Invalid dates accepted");
+        } catch (InvalidDatesException e) {
+            DateValidationResult result = e.getValidationResult();
+            assertFalse(result.isValid());
+            assertEquals(2, result.getValidDates().size());
+            assertTrue(result.getValidDates().contains(march(6)));
+            assertTrue(result.getValidDates().contains(march(15)));
+
+            List<RejectedDate> rejected = result.getRejectedDates();
+            assertEquals(4, rejected.size());
+            assertRejected(rejected, before, Reason.OUT_OF_RANGE);
+            assertRejected(rejected, after, Reason.OUT_OF_RANGE);
+            assertRejected(rejected, disabled, Reason.DISABLED);
+            assertRejected(rejected, otherDisabled, Reason.DISABLED);
+        }
+
+        // A range set is validated the same way
+        try {
+            model.checkValue(DateRangeSet.ofRange(day(march(8)),
+                    day(march(22)), ZONE));
+            fail("Invalid range accepted");
+        } catch (InvalidDatesException e) {
+            assertEquals(4, e.getValidationResult().getRejectedDates().size());
+        }
+
+        Object value = model.checkValue(Arrays.asList(march(6), march(15)));
+        assertFalse(value instanceof DateRangeSet);
+        assertEquals(2, ((Collection<?>) value).size());
+    }
+
+    @Test
+    public void checkValueInSingleMode() {
+        CalendarModel model = new CalendarModel(ZONE);
+        model.setStartDate(march(5));
+        model.setDisabledDates(march(10));
+
+        assertEquals(march(6), model.checkValue(march(6)));
+        assertNull(model.checkValue(null));
+        assertInvalid(model, march(1));
+        assertInvalid(model, noon(march(10)));
+        assertInvalid(model, Arrays.asList(march(6)));
+    }
+
+    @Test
+    public void getValidRangeClipsToStartAndEndDates() {
+        CalendarModel model = new CalendarModel(ZONE);
+
+        // The start date in the middle of a day excludes the day
+        model.setStartDate(noon(march(5)));
+        model.setEndDate(noon(march(10)));
+        assertRange(model.getValidRange(march(1), march(31)), march(6),
+                march(10));
+        assertRange(model.getValidRange(march(31), march(1)), march(6),
+                march(10));
+        assertRange(model.getValidRange(march(7), march(8)), march(7),
+                march(8));
+        assertTrue(model.getValidRange(march(11), march(20)).isEmpty());
+
+        // A start date at midnight includes the day
+        model.setStartDate(march(5));
+        assertRange(model.getValidRange(march(1), march(31)), march(5),
+                march(10));
+    }
+
+    @Test
+    public void getValidRangeLeavesOutDisabledDays() {
+        CalendarModel model = new CalendarModel(ZONE);
+        model.setDisabledDates(march(3), march(4), march(8));
+
+        DateRangeSet range = model.getValidRange(march(1), march(10));
+        assertEquals(3, range.getRangeCount());
+        assertEquals(7, range.size());
+        assertFalse(range.containsDay(day(march(3))));
+        assertFalse(range.containsDay(day(march(4))));
+        assertFalse(range.containsDay(day(march(8))));
+        assertTrue(range.containsDay(day(march(10))));
+
+        assertTrue(model.getValidRange(march(3), noon(march(4))).isEmpty());
+    }
+
+    @Test
+    public void navigationStaysWithinStartAndEndDates() {
+        CalendarModel model = new CalendarModel(ZONE);
+        model.setStartDate(date(2022, Calendar.MARCH, 31));
+        model.setEndDate(date(2022, Calendar.MAY, 1));
+
+        assertFalse(model.showMonth(2022, Calendar.FEBRUARY));
+        assertTrue(model.showMonth(2022, Calendar.MARCH));
+        assertDisplayed(model, 2022, Calendar.MARCH);
+
+        assertFalse(model.previousMonth());
+        assertFalse(model.previousYear());
+        assertFalse(model.nextYear());
+        assertDisplayed(model, 2022, Calendar.MARCH);
+
+        assertTrue(model.nextMonth());
+        assertTrue(model.nextMonth());
+        assertDisplayed(model, 2022, Calendar.MAY);
+        assertFalse(model.nextMonth());
+        assertDisplayed(model, 2022, Calendar.MAY);
+
+        assertTrue(model.previousMonth());
+        assertDisplayed(model, 2022, Calendar.APRIL);
+
+        // Without limits every month can be displayed
+        model.setStartDate(null);
+        model.setEndDate(null);
+        assertTrue(model.previousYear());
+        assertDisplayed(model, 2021, Calendar.APRIL);
+        assertTrue(model.showMonth(2000, Calendar.DECEMBER));
+        assertTrue(model.nextMonth());
+        assertDisplayed(model, 2001, Calendar.JANUARY);
+    }
+
+    private static CalendarModel multiselectModel(boolean rangeCompressed) {
+        CalendarModel model = new CalendarModel(ZONE);
+        model.setMultiSelect(true);
+        model.setRangeCompressedValue(rangeCompressed);
+        return model;
+    }
+
+    private static void assertSelection(CalendarModel model,
+            boolean rangeCompressed, Date... dates) {
+        Object value = model.getValue();
+        assertEquals(rangeCompressed, value instanceof DateRangeSet);
+        Set<?> selection = (Set<?>) value;
+        assertEquals(dates.length, selection.size());
+        for (Date date : dates) {
+            assertTrue(date.toString(), selection.contains(date));
+            assertTrue(date.toString(), model.isSelected(noon(date)));
+        }
+    }
+
+    private static void assertRejected(List<RejectedDate> rejected, Date date,
+            Reason reason) {
+        for (RejectedDate r : rejected) {
+            if (r.getDate().equals(date)) {
+                assertEquals(reason, r.getReason());
+                return;
+            }
+        }
+        fail(date + " was not rejected");
+    }
+
+    private static void assertInvalid(CalendarModel model, Object value) {
+        try {
+            model.checkValue(value);
+            fail(value + " accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static void assertRange(DateRangeSet range, Date first, Date last) {
+        assertEquals(1, range.getRangeCount());
+        assertEquals(day(first), range.getRangeStart(0));
+        assertEquals(day(last), range.getRangeEnd(0));
+    }
+
+    private static void assertDisplayed(CalendarModel model, int year,
+            int month) {
+        assertEquals(year, model.getDisplayedYear());
+        assertEquals(month, model.getDisplayedMonth());
+    }
+
+    private static int day(Date date) {
+        return EpochDayUtil.toEpochDay(date, ZONE);
+    }
+
+    private static Date march(int dayOfMonth) {
+        return date(2022, Calendar.MARCH, dayOfMonth);
+    }
+
+    private static Date date(int year, int month, int dayOfMonth) {
+        return EpochDayUtil.toDate(Day.toEpochDay(year, month, dayOfMonth),
+                ZONE);
+    }
+
+    private static Date noon(Date date) {
+        return new Date(date.getTime() + HOURS_12);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DateRangeSet}
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class DateRangeSetTest {
+
+    private static final TimeZone ZONE = TimeZone
+            .getTimeZone("Europe/Helsinki");
+
+    @Test
+    public void equalsIsSymmetricWithHashSet() {
+        DateRangeSet set = days(100, 101, 102, 200);
+        Set<Date> copy = new HashSet<Date>(set);
+        assertTrue(set.equals(copy));
+        assertTrue(copy.equals(set));
+        assertEquals(copy.hashCode(), set.hashCode());
+    }
+
+    @Test
+    public void datesWithinADayAreNotElements() {
+        DateRangeSet set = days(100, 101);
+        Date midday = new Date(EpochDayUtil.toTime(100, ZONE) + 12 * 60 * 60
+                * 1000);
+        Set<Date> other = new HashSet<Date>();
+        other.add(midday);
+        other.add(EpochDayUtil.toDate(101, ZONE));
+
+        assertFalse(set.contains(midday));
+        assertTrue(set.containsDate(midday));
+        assertFalse(set.equals(other));
+        assertFalse(other.equals(set));
+    }
+
+    @Test
+    public void equalsAcrossTimeZones() {
+        DateRangeSet helsinki = days(100, 101);
+        DateRangeSet utc = DateRangeSet.ofDays(new int[] { 100, 101 }, 2,
+                TimeZone.getTimeZone("UTC"));
+        assertFalse(helsinki.equals(utc));
+        assertFalse(utc.equals(helsinki));
+        assertTrue(helsinki.equals(days(101, 100)));
+        assertEquals(helsinki.hashCode(), days(101, 100).hashCode());
+    }
+
+    @Test
+    public void ofDaysCoalescesAdjacentAndDuplicateDays() {
+        DateRangeSet set = days(5, 3, 4, 4, 10, 8, 9, 20);
+        assertRanges(set, 3, 5, 8, 10, 20, 20);
+        assertEquals(7, set.size());
+    }
+
+    @Test
+    public void unionOfOverlappingRanges() {
+        assertRanges(range(1, 10).union(range(5, 15)), 1, 15);
+        assertRanges(range(5, 15).union(range(1, 10)), 1, 15);
+        assertRanges(range(1, 20).union(range(5, 10)), 1, 20);
+    }
+
+    @Test
+    public void unionOfAdjacentRanges() {
+        assertRanges(range(1, 10).union(range(11, 20)), 1, 20);
+        assertRanges(range(11, 20).union(range(1, 10)), 1, 20);
+    }
+
+    @Test
+    public void unionOfDisjointRanges() {
+        DateRangeSet set = range(1, 10).union(range(12, 20))
+                .union(range(30, 30));
+        assertRanges(set, 1, 10, 12, 20, 30, 30);
+        assertEquals(20, set.size());
+
+        // Filling the gaps coalesces the ranges
+        assertRanges(set.union(days(11, 21, 22, 23, 24, 25, 26, 27, 28, 29)),
+                1, 30);
+    }
+
+    @Test
+    public void unionWithEmptySet() {
+        DateRangeSet set = range(1, 10);
+        DateRangeSet empty = DateRangeSet.empty(ZONE);
+        assertSame(set, set.union(empty));
+        assertSame(set, empty.union(set));
+    }
+
+    @Test
+    public void differenceFromTheMiddleOfARange() {
+        DateRangeSet set = range(1, 10).difference(range(4, 6));
+        assertRanges(set, 1, 3, 7, 10);
+        assertEquals(7, set.size());
+    }
+
+    @Test
+    public void differenceAtTheEdgesOfRanges() {
+        assertRanges(range(1, 10).difference(range(1, 1)), 2, 10);
+        assertRanges(range(1, 10).difference(range(10, 15)), 1, 9);
+        assertRanges(range(1, 10).difference(range(-5, 3)), 4, 10);
+        assertRanges(range(1, 10).difference(range(0, 11)));
+        assertRanges(range(1, 10).difference(range(11, 20)), 1, 10);
+    }
+
+    @Test
+    public void differenceOfSeveralRanges() {
+        DateRangeSet set = range(1, 10).union(range(20, 30));
+        DateRangeSet removed = days(2, 5, 6, 10, 19, 20, 25);
+        assertRanges(set.difference(removed), 1, 1, 3, 4, 7, 9, 21, 24, 26,
+                30);
+    }
+
+    @Test
+    public void extremeEpochDays() {
+        DateRangeSet low = DateRangeSet.ofRange(Integer.MIN_VALUE,
+                Integer.MIN_VALUE + 2, ZONE);
+        DateRangeSet high = DateRangeSet.ofRange(Integer.MAX_VALUE - 2,
+                Integer.MAX_VALUE, ZONE);
+        assertEquals(3, low.size());
+        assertEquals(3, high.size());
+        assertTrue(low.containsDay(Integer.MIN_VALUE));
+        assertTrue(high.containsDay(Integer.MAX_VALUE));
+        assertFalse(high.containsDay(Integer.MIN_VALUE));
+
+        DateRangeSet both = low.union(high);
+        assertRanges(both, Integer.MIN_VALUE, Integer.MIN_VALUE + 2,
+                Integer.MAX_VALUE - 2, Integer.MAX_VALUE);
+        assertRanges(both.difference(DateRangeSet.ofRange(Integer.MIN_VALUE,
+                Integer.MIN_VALUE, ZONE)), Integer.MIN_VALUE + 1,
+                Integer.MIN_VALUE + 2, Integer.MAX_VALUE - 2,
+                Integer.MAX_VALUE);
+        assertRanges(both.difference(DateRangeSet.ofRange(
+                Integer.MAX_VALUE - 1, Integer.MAX_VALUE, ZONE)),
+                Integer.MIN_VALUE, Integer.MIN_VALUE + 2,
+                Integer.MAX_VALUE - 2, Integer.MAX_VALUE - 2);
+
+        // Adjacent ranges ending at the largest day do not overflow
+        assertRanges(days(Integer.MAX_VALUE, Integer.MAX_VALUE - 1),
+                Integer.MAX_VALUE - 1, Integer.MAX_VALUE);
+        assertRanges(DateRangeSet.ofRange(0, Integer.MAX_VALUE, ZONE).union(
+                DateRangeSet.ofRange(Integer.MIN_VALUE, -1, ZONE)),
+                Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertEquals(Integer.MAX_VALUE, DateRangeSet.ofRange(
+                Integer.MIN_VALUE, Integer.MAX_VALUE, ZONE).size());
+    }
+
+    @Test
+    public void sizeMatchesIterator() {
+        DateRangeSet set = range(1, 10).union(range(15, 15))
+                .union(range(100, 200)).difference(days(150));
+        int count = 0;
+        int previous = Integer.MIN_VALUE;
+        for (Date date : set) {
+            int day = EpochDayUtil.toEpochDay(date, ZONE);
+            assertTrue(day > previous);
+            assertTrue(set.contains(date));
+            previous = day;
+            count++;
+        }
+        assertEquals(set.size(), count);
+        assertEquals(111, count);
+        assertEquals(0, countDates(DateRangeSet.empty(ZONE)));
+    }
+
+    private static int countDates(DateRangeSet set) {
+        int count = 0;
+        for (Iterator<Date> i = set.iterator(); i.hasNext(); i.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Asserts the ranges of a set given as first and last day pairs
+     */
+    private static void assertRanges(DateRangeSet set, int... ranges) {
+        int[] actual = new int[set.getRangeCount() * 2];
+        for (int i = 0; i < set.getRangeCount(); i++) {
+            actual[i * 2] = set.getRangeStart(i);
+            actual[i * 2 + 1] = set.getRangeEnd(i);
+        }
+        assertArrayEquals(ranges, actual);
+    }
+
+    static DateRangeSet range(int first, int last) {
+        return DateRangeSet.ofRange(first, last, ZONE);
+    }
+
+    static DateRangeSet days(int... days) {
+        return DateRangeSet.ofDays(days.clone(), days.length, ZONE);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import fi.jasoft.simplecalendar.shared.Day;
+import fi.jasoft.simplecalendar.shared.RecurrenceRule;
+import fi.jasoft.simplecalendar.shared.Weekday;
+
+/**
+ * Tests serializing calendars, their rules and values, and that corrupt
+ * streams are rejected before memory is allocated for them
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class SerializationTest {
+
+    private static final TimeZone ZONE = TimeZone.getDefault();
+
+    @Test
+    public void calendarRoundTrip() throws Exception {
+        SimpleCalendar calendar = new SimpleCalendar();
+        calendar.setMultiSelect(true);
+        calendar.setStartDate(date(2022, Calendar.JANUARY, 1));
+        calendar.setEndDate(date(2022, Calendar.DECEMBER, 31));
+        calendar.setDisabledWeekDays(Weekday.SUNDAY);
+        calendar.setDisabledMonthlyDates(13);
+        calendar.setDisabledDates(date(2022, Calendar.MARCH, 3),
+                new Date(date(2022, Calendar.APRIL, 4).getTime() + 1234));
+        calendar.setDisabledRecurrenceRules(RecurrenceRule.yearly(
+                Calendar.DECEMBER, 25).observedOnWeekday());
+        calendar.setCalendarRules(createRules());
+        calendar.setDisabledDateProvider(new FifteenthProvider());
+        calendar.setValue(new ArrayList<Date>(Arrays.asList(
+                date(2022, Calendar.MAY, 2), date(2022, Calendar.MAY, 3))));
+
+        SimpleCalendar copy = roundTrip(calendar);
+
+        assertTrue(copy.isMultiSelect());
+        assertEquals(calendar.getStartDate(), copy.getStartDate());
+        assertEquals(calendar.getEndDate(), copy.getEndDate());
+        assertArrayEquals(calendar.getDisabledWeekdays(),
+                copy.getDisabledWeekdays());
+        assertArrayEquals(calendar.getDisabledMonthlyDates(),
+                copy.getDisabledMonthlyDates());
+        assertArrayEquals(calendar.getDisabledDates(),
+                copy.getDisabledDates());
+        assertEquals(1, copy.getDisabledRecurrenceRules().length);
+        assertTrue(copy.getDisabledRecurrenceRules()[0].isObservedOnWeekday());
+        assertTrue(copy.getDisabledDateProvider() instanceof FifteenthProvider);
+        assertEquals(calendar.getCalendarRules().getAllDisabledDates(), copy
+                .getCalendarRules().getAllDisabledDates());
+        assertEquals(calendar.getValue(), copy.getValue());
+
+        Date start = date(2022, Calendar.JANUARY, 1);
+        Date end = date(2022, Calendar.DECEMBER, 31);
+        List<Date> disabled = calendar.getDisabledDates(start, end);
+        assertEquals(disabled, copy.getDisabledDates(start, end));
+        // Every kind of rule disables something
+        assertTrue(disabled.contains(date(2022, Calendar.JANUARY, 2)));
+        assertTrue(disabled.contains(date(2022, Calendar.JANUARY, 13)));
+        assertTrue(disabled.contains(date(2022, Calendar.JANUARY, 15)));
+        assertTrue(disabled.contains(date(2022, Calendar.MARCH, 3)));
+        assertTrue(disabled.contains(date(2022, Calendar.APRIL, 4)));
+        assertTrue(disabled.contains(date(2022, Calendar.JUNE, 21)));
+        assertTrue(disabled.contains(date(2022, Calendar.DECEMBER, 26)));
+    }
+
+    @Test
+    public void modelRoundTrip() throws Exception {
+        for (boolean compressed : new boolean[] { false, true }) {
+            CalendarModel model = new CalendarModel(ZONE);
+            model.setMultiSelect(true);
+            model.setRangeCompressedValue(compressed);
+            model.setDisabledWeekdays(Weekday.SATURDAY);
+            model.setDisabledMonthlyDates(1, 31);
+            model.setDisabledDates(date(2022, Calendar.FEBRUARY, 2), null);
+            model.setDisabledRecurrenceRules(RecurrenceRule
+                    .lastWeekdayOfMonth(Weekday.FRIDAY));
+            model.setCalendarRules(createRules());
+            model.setDisabledDateProvider(new FifteenthProvider(), 12);
+            model.selectRange(date(2022, Calendar.MARCH, 7),
+                    date(2022, Calendar.MARCH, 11));
+            model.showMonth(2022, Calendar.MARCH);
+
+            CalendarModel copy = roundTrip(model);
+
+            assertEquals(model.getValue(), copy.getValue());
+            assertEquals(compressed, copy.getValue() instanceof DateRangeSet);
+            assertEquals(model.getDisabledWeekdays(),
+                    copy.getDisabledWeekdays());
+            assertEquals(model.getDisabledMonthlyDates(),
+                    copy.getDisabledMonthlyDates());
+            assertEquals(model.getDisabledDates(), copy.getDisabledDates());
+            assertEquals(2022, copy.getDisplayedYear());
+            assertEquals(Calendar.MARCH, copy.getDisplayedMonth());
+
+            Date start = date(2021, Calendar.DECEMBER, 1);
+            Date end = date(2023, Calendar.JANUARY, 31);
+            assertEquals(model.getDisabledDates(start, end),
+                    copy.getDisabledDates(start, end));
+        }
+    }
+
+    @Test
+    public void registeredRulesAreSerializedById() throws Exception {
+        CalendarRules rules = createRules();
+        CalendarRules.register(SerializationTest.class.getName(), rules);
+        try {
+            assertSame(rules, roundTrip(rules));
+            CalendarRules extended = rules.extend()
+                    .disableWeekdays(Weekday.MONDAY).build();
+            assertSame(rules, roundTrip(extended).getBase());
+        } finally {
+            CalendarRules.register(SerializationTest.class.getName(), null);
+        }
+    }
+
+    @Test
+    public void dateRangeSetRoundTrip() throws Exception {
+        DateRangeSet set = DateRangeSet.ofRange(Integer.MIN_VALUE,
+                Integer.MIN_VALUE + 3, ZONE)
+                .union(DateRangeSet.ofRange(-10, 10, ZONE))
+                .union(DateRangeSet.ofDays(new int[] { 19000, 19002 }, 2, ZONE))
+                .union(DateRangeSet.ofRange(Integer.MAX_VALUE - 1,
+                        Integer.MAX_VALUE, ZONE));
+
+        DateRangeSet copy = roundTrip(set);
+        assertEquals(set, copy);
+        assertEquals(set.size(), copy.size());
+        assertEquals(set.getRangeCount(), copy.getRangeCount());
+        for (int i = 0; i < set.getRangeCount(); i++) {
+            assertEquals(set.getRangeStart(i), copy.getRangeStart(i));
+            assertEquals(set.getRangeEnd(i), copy.getRangeEnd(i));
+        }
+        assertEquals(ZONE.getID(), copy.getTimeZone().getID());
+
+        assertTrue(roundTrip(DateRangeSet.empty(ZONE)).isEmpty());
+    }
+
+    @Test
+    public void truncatedStreamsAreRejected() throws Exception {
+        DateRangeSet set = DateRangeSet.ofRange(0, 10, ZONE).union(
+                DateRangeSet.ofRange(20, 30, ZONE));
+        byte[] bytes = serialize(set);
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                deserialize(Arrays.copyOf(bytes, length));
+                fail("Truncated stream of " + length + " bytes accepted");
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void oversizedLengthsAreRejected() throws Exception {
+        // Integer.MAX_VALUE as a variable length number
+        byte[] maxLength = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, 0x07 };
+        try {
+            CompactSerialization.readRanges(input(maxLength));
+            fail("Missing ranges accepted");
+        } catch (EOFException e) {
+            // Expected
+        }
+        try {
+            CompactSerialization.readDates(input(utf(ZONE.getID()), maxLength));
+            fail("Missing dates accepted");
+        } catch (EOFException e) {
+            // Expected
+        }
+
+        // Integer.MAX_VALUE + 1 does not fit an array
+        byte[] tooLong = { (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, 0x08 };
+        try {
+            CompactSerialization.readRanges(input(tooLong));
+            fail("Too long length accepted");
+        } catch (StreamCorruptedException e) {
+            // Expected
+        }
+
+        // A number without an end
+        byte[] malformed = new byte[12];
+        Arrays.fill(malformed, (byte) 0xFF);
+        try {
+            CompactSerialization.readRanges(input(malformed));
+            fail("Malformed length accepted");
+        } catch (StreamCorruptedException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void compactDatesRoundTrip() throws Exception {
+        List<Date> dates = Arrays.asList(date(2022, Calendar.MAY, 1), null,
+                new Date(date(1970, Calendar.JANUARY, 1).getTime() + 1),
+                new Date(date(2038, Calendar.JANUARY, 19).getTime() - 1),
+                date(1900, Calendar.MARCH, 1));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactSerialization.writeDates(new DataOutputStream(bytes), dates,
+                ZONE);
+        assertEquals(dates, Arrays.asList(CompactSerialization
+                .readDates(input(bytes.toByteArray()))));
+    }
+
+    /**
+     * Rules with every kind of rule
+     */
+    private static CalendarRules createRules() {
+        CalendarRules base = CalendarRules.builder()
+                .disableDates(date(2022, Calendar.JUNE, 21)).build();
+        return base.extend().disableWeekdays(Weekday.SUNDAY)
+                .disableMonthlyDates(13)
+                .disableDates(date(2022, Calendar.DECEMBER, 6)).build();
+    }
+
+    /**
+     * Disables the 15th of each month
+     */
+    @SuppressWarnings("serial")
+    private static class FifteenthProvider implements DisabledDateProvider {
+
+        @Override
+        public Collection<Date> getDisabledDates(Date start, Date end) {
+            Calendar calendar = Calendar.getInstance(ZONE);
+            calendar.setTime(start);
+            calendar.set(Calendar.DAY_OF_MONTH, 15);
+            return Collections.singleton(calendar.getTime());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T object) throws Exception {
+        return (T) deserialize(serialize(object));
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException,
+            ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] utf(String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(value);
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream input(byte[]... parts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bytes.write(part, 0, part.length);
+        }
+        return new DataInputStream(new ByteArrayInputStream(
+                bytes.toByteArray()));
+    }
+
+    private static Date date(int year, int month, int dayOfMonth) {
+        return EpochDayUtil.toDate(Day.toEpochDay(year, month, dayOfMonth),
+                ZONE);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Tests the epoch day arithmetic of {@link Day} against the proleptic
+ * gregorian calendar of the JDK
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class DayTest {
+
+    // 0001-01-01 and 4000-12-31
+    private static final int FIRST_DAY = -719162;
+    private static final int LAST_DAY = 741380;
+
+    @Test
+    public void fieldsMatchGregorianCalendar() {
+        GregorianCalendar calendar = createUtcCalendar();
+        calendar.setTimeInMillis(FIRST_DAY * Day.MILLIS_PER_DAY);
+        for (int day = FIRST_DAY; day <= LAST_DAY; day++) {
+            String expected = calendar.get(Calendar.YEAR) + "-"
+                    + calendar.get(Calendar.MONTH) + "-"
+                    + calendar.get(Calendar.DAY_OF_MONTH) + " "
+                    + (calendar.get(Calendar.DAY_OF_WEEK) - 1);
+            String actual = Day.getYear(day) + "-" + Day.getMonth(day) + "-"
+                    + Day.getDayOfMonth(day) + " " + Day.getDayOfWeek(day);
+            assertEquals("Epoch day " + day, expected, actual);
+            calendar.add(Calendar.DATE, 1);
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        for (int day = FIRST_DAY; day <= LAST_DAY; day++) {
+            assertEquals(day, Day.toEpochDay(Day.getYear(day),
+                    Day.getMonth(day), Day.getDayOfMonth(day)));
+        }
+    }
+
+    @Test
+    public void negativeEpochDays() {
+        assertEquals(-1, Day.toEpochDay(1969, 11, 31));
+        assertEquals("1969-12-31", Day.of(-1).toString());
+        assertEquals(Weekday.WEDNESDAY, Day.of(-1).getWeekday());
+        assertEquals("1900-01-01", Day.of(-25567).toString());
+        assertEquals(0, Day.toEpochDay(1970, 0, 1));
+    }
+
+    @Test
+    public void leapYears() {
+        assertEquals(29, Day.getDaysInMonth(2000, 1));
+        assertEquals(28, Day.getDaysInMonth(1900, 1));
+        assertEquals(28, Day.getDaysInMonth(2100, 1));
+        assertEquals(29, Day.getDaysInMonth(2012, 1));
+        assertEquals(28, Day.getDaysInMonth(2013, 1));
+
+        // The day after february 28th of a century year
+        assertEquals("1900-03-01", Day.of(1900, 1, 28).plusDays(1)
+                .toString());
+        assertEquals("2100-03-01", Day.of(2100, 1, 28).plusDays(1)
+                .toString());
+        assertEquals("2000-02-29", Day.of(2000, 1, 28).plusDays(1)
+                .toString());
+        assertEquals(Day.toEpochDay(2000, 2, 1),
+                Day.toEpochDay(2000, 1, 29) + 1);
+    }
+
+    @Test
+    public void monthKeys() {
+        for (int day = -1000; day <= 1000; day += 17) {
+            int key = Day.getMonthKey(day);
+            assertEquals(Day.getYear(day), Day.getYearOfMonthKey(key));
+            assertEquals(Day.getMonth(day), Day.getMonthOfMonthKey(key));
+            assertEquals(Day.toEpochDay(Day.getYear(day), Day.getMonth(day),
+                    1), Day.getFirstDayOfMonthKey(key));
+        }
+        assertEquals(-1, Day.getYearOfMonthKey(-1));
+        assertEquals(11, Day.getMonthOfMonthKey(-1));
+    }
+
+    @Test
+    public void fromTime() {
+        assertEquals(0, Day.fromTime(0, 0));
+        assertEquals(-1, Day.fromTime(-1, 0));
+        assertEquals(-1, Day.fromTime(0, -1));
+        assertEquals(1, Day.fromTime(Day.MILLIS_PER_DAY, 0));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void localDates() {
+        Date date = new Date(113, 11, 24, 15, 30);
+        assertEquals(Day.toEpochDay(2013, 11, 24), Day.fromLocalDate(date));
+        assertEquals(new Date(113, 11, 24), Day.toLocalDate(Day
+                .fromLocalDate(date)));
+    }
+
+    private static GregorianCalendar createUtcCalendar() {
+        GregorianCalendar calendar = new GregorianCalendar(
+                TimeZone.getTimeZone("UTC"));
+        // Gregorian rules also before 1582
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+        calendar.clear();
+        return calendar;
+    }
+}
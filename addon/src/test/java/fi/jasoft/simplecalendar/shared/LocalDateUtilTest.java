@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LocalDateUtil}
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("deprecation")
+public class LocalDateUtilTest {
+
+    @Test
+    public void datesBetweenKeepTimeOfStart() {
+        Date start = new Date(113, 11, 30, 14, 0);
+        Date end = new Date(114, 0, 2, 9, 0);
+        List<Date> dates = LocalDateUtil.getDatesBetween(start, end);
+        assertEquals(Arrays.asList(start, new Date(113, 11, 31, 14, 0),
+                new Date(114, 0, 1, 14, 0), end), dates);
+    }
+
+    @Test
+    public void datesBetweenOneDatePerDay() {
+        Date start = new Date(113, 11, 30, 9, 0);
+        Date end = new Date(114, 0, 1, 14, 0);
+        List<Date> dates = LocalDateUtil.getDatesBetween(start, end);
+        assertEquals(Arrays.asList(start, new Date(113, 11, 31, 9, 0), end),
+                dates);
+    }
+
+    @Test
+    public void datesBetweenSameDay() {
+        Date start = new Date(113, 11, 30, 9, 0);
+        Date end = new Date(113, 11, 30, 14, 0);
+        assertEquals(Arrays.asList(start, end),
+                LocalDateUtil.getDatesBetween(start, end));
+        assertEquals(Arrays.asList(start),
+                LocalDateUtil.getDatesBetween(end, start));
+    }
+
+    @Test
+    public void incrementDaysAcrossMonthsAndYears() {
+        Date date = new Date(112, 1, 28, 10, 15, 30);
+        assertEquals(new Date(112, 1, 29, 10, 15, 30),
+                LocalDateUtil.incrementDays(date, 1));
+        assertEquals(new Date(112, 2, 1, 10, 15, 30),
+                LocalDateUtil.incrementDays(date, 2));
+        assertEquals(new Date(111, 11, 31, 10, 15, 30),
+                LocalDateUtil.incrementDays(date, -59));
+    }
+
+    @Test
+    public void incrementDaysKeepsMillis() {
+        Date date = new Date(new Date(113, 5, 1, 12, 0).getTime() + 250);
+        assertEquals(new Date(113, 5, 3, 12, 0).getTime() + 250,
+                LocalDateUtil.incrementDays(date, 2).getTime());
+    }
+}
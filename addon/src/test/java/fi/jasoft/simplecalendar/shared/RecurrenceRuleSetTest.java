@@ -0,0 +1,187 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.shared;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests evaluating {@link RecurrenceRule}s together in a
+ * {@link RecurrenceRuleSet}
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class RecurrenceRuleSetTest {
+
+    @Test
+    public void saturdayHolidayFollowedByMondayHolidayIsObservedOnTuesday() {
+        // 2021-12-25 is a saturday and 2021-12-27 a monday
+        RecurrenceRuleSet set = rules(
+                RecurrenceRule.yearly(Calendar.DECEMBER, 25)
+                        .observedOnWeekday(),
+                RecurrenceRule.yearly(Calendar.DECEMBER, 27));
+
+        assertMatches(set, 2021, Calendar.DECEMBER, 27, 28);
+    }
+
+    @Test
+    public void weekendHolidaysAreObservedOnConsecutiveDays() {
+        // 2021-12-25 and 2021-12-26 fall on a weekend
+        RecurrenceRuleSet set = rules(
+                RecurrenceRule.yearly(Calendar.DECEMBER, 25)
+                        .observedOnWeekday(),
+                RecurrenceRule.yearly(Calendar.DECEMBER, 26)
+                        .observedOnWeekday());
+
+        assertMatches(set, 2021, Calendar.DECEMBER, 27, 28);
+        assertMatches(set, 2020, Calendar.DECEMBER, 25, 28);
+    }
+
+    @Test
+    public void sundayThirtyFirstMovesIntoNextMonth() {
+        // 2022-07-31 is a sunday
+        RecurrenceRuleSet set = rules(RecurrenceRule.yearly(Calendar.JULY, 31)
+                .observedOnWeekday());
+
+        assertMatches(set, 2022, Calendar.JULY);
+        assertMatches(set, 2022, Calendar.AUGUST, 1);
+        assertTrue(set.matches(Day.toEpochDay(2022, Calendar.AUGUST, 1)));
+        assertFalse(set.matches(Day.toEpochDay(2022, Calendar.JULY, 31)));
+
+        // 2022-12-31 is a saturday and moves into the next year
+        set = rules(RecurrenceRule.yearly(Calendar.DECEMBER, 31)
+                .observedOnWeekday());
+        assertMatches(set, 2022, Calendar.DECEMBER);
+        assertMatches(set, 2023, Calendar.JANUARY, 2);
+    }
+
+    @Test
+    public void adjacentMonthsAgreeRegardlessOfQueryOrder() {
+        int first = Day.toEpochDay(2022, Calendar.JANUARY, 1);
+        int last = Day.toEpochDay(2023, Calendar.DECEMBER, 31);
+        for (int day = first; day <= last; day++) {
+            int month = Day.getMonthKey(day);
+
+            // The month before computed first
+            RecurrenceRuleSet before = holidays();
+            before.getMonthMask(month - 1);
+            boolean afterPrevious = before.matches(day);
+
+            // The month after computed first
+            RecurrenceRuleSet after = holidays();
+            after.getMonthMask(month + 1);
+            boolean afterNext = after.matches(day);
+
+            // A range spanning both months
+            int[] matching = holidays().getMatchingDays(
+                    Day.getFirstDayOfMonthKey(month - 1),
+                    Day.getFirstDayOfMonthKey(month + 2) - 1);
+            boolean inRange = Arrays.binarySearch(matching, day) >= 0;
+
+            boolean alone = holidays().matches(day);
+            assertEquals("Epoch day " + day, alone, afterPrevious);
+            assertEquals("Epoch day " + day, alone, afterNext);
+            assertEquals("Epoch day " + day, alone, inRange);
+        }
+    }
+
+    @Test
+    public void matchesAgreesWithMatchingDays() {
+        RecurrenceRuleSet set = holidays();
+        int first = Day.toEpochDay(2021, Calendar.JANUARY, 1);
+        int last = Day.toEpochDay(2023, Calendar.DECEMBER, 31);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int day = first; day <= last; day++) {
+            if (set.matches(day)) {
+                expected.add(day);
+            }
+        }
+        assertArrayEquals(toArray(expected), set.getMatchingDays(first, last));
+        assertArrayEquals(toArray(expected), holidays().getMatchingDays(first,
+                last));
+
+        // Ranges starting and ending mid-month
+        int from = Day.toEpochDay(2022, Calendar.MARCH, 15);
+        int to = Day.toEpochDay(2022, Calendar.OCTOBER, 10);
+        List<Integer> partial = new ArrayList<Integer>();
+        for (int day : expected) {
+            if (day >= from && day <= to) {
+                partial.add(day);
+            }
+        }
+        assertArrayEquals(toArray(partial), set.getMatchingDays(from, to));
+    }
+
+    /**
+     * Returns a set mixing observed and regular rules
+     */
+    private static RecurrenceRuleSet holidays() {
+        return rules(
+                RecurrenceRule.yearly(Calendar.JANUARY, 1).observedOnWeekday(),
+                RecurrenceRule.yearly(Calendar.MAY, 1).observedOnWeekday(),
+                RecurrenceRule.yearly(Calendar.JULY, 31).observedOnWeekday(),
+                RecurrenceRule.yearly(Calendar.DECEMBER, 25)
+                        .observedOnWeekday(),
+                RecurrenceRule.yearly(Calendar.DECEMBER, 26)
+                        .observedOnWeekday(),
+                RecurrenceRule.yearly(Calendar.DECEMBER, 31)
+                        .observedOnWeekday(),
+                RecurrenceRule.lastWeekdayOfMonth(Weekday.FRIDAY),
+                RecurrenceRule.nthWeekdayOfMonth(1, Weekday.MONDAY),
+                RecurrenceRule.weekly(Weekday.WEDNESDAY, 2,
+                        Day.of(2022, Calendar.JANUARY, 5)));
+    }
+
+    private static RecurrenceRuleSet rules(RecurrenceRule... rules) {
+        return new RecurrenceRuleSet(Arrays.asList(rules));
+    }
+
+    /**
+     * Asserts the days of a month matched by a set
+     */
+    private static void assertMatches(RecurrenceRuleSet set, int year,
+            int month, int... daysOfMonth) {
+        int first = Day.toEpochDay(year, month, 1);
+        int last = first + Day.getDaysInMonth(year, month) - 1;
+        int[] expected = new int[daysOfMonth.length];
+        for (int i = 0; i < daysOfMonth.length; i++) {
+            expected[i] = first + daysOfMonth[i] - 1;
+        }
+        assertArrayEquals(expected, set.getMatchingDays(first, last));
+        for (int day = first; day <= last; day++) {
+            assertEquals(Arrays.binarySearch(expected, day) >= 0,
+                    set.matches(day));
+        }
+    }
+
+    private static int[] toArray(List<Integer> days) {
+        int[] array = new int[days.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = days.get(i);
+        }
+        return array;
+    }
+}
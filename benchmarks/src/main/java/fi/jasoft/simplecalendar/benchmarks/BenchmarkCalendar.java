@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.benchmarks;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import fi.jasoft.simplecalendar.SimpleCalendar;
+import fi.jasoft.simplecalendar.shared.SimpleCalendarState;
+
+/**
+ * A {@link SimpleCalendar} which exposes the protected validation methods and
+ * the state to the benchmarks
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public class BenchmarkCalendar extends SimpleCalendar {
+
+    @Override
+    public boolean isDateDisabled(Date date) {
+        return super.isDateDisabled(date);
+    }
+
+    @Override
+    public boolean isDateInRange(Date date) {
+        return super.isDateInRange(date);
+    }
+
+    @Override
+    public SimpleCalendarState getState(boolean markAsDirty) {
+        return super.getState(markAsDirty);
+    }
+
+    /**
+     * Returns dates at noon a number of days apart
+     *
+     * @param year
+     *            The year of the first date
+     * @param month
+     *            The month (0-11) of the first date
+     * @param dayOfMonth
+     *            The day of the month of the first date
+     * @param count
+     *            The amount of dates
+     * @param step
+     *            The amount of days between the dates
+     */
+    public static Date[] days(int year, int month, int dayOfMonth, int count,
+            int step) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, dayOfMonth, 12, 0);
+        Date[] dates = new Date[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = calendar.getTime();
+            calendar.add(Calendar.DATE, step);
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.benchmarks;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.jasoft.simplecalendar.shared.Day;
+import fi.jasoft.simplecalendar.shared.DaySet;
+
+/**
+ * Measures looking up the 42 cells of a month in the selected or disabled
+ * days the way the widget does on each render, with a {@link DaySet} and with
+ * a set of boxed days.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaySetBenchmark {
+
+    private static final int FIRST_DAY = Day.toEpochDay(2000, 0, 1);
+
+    @Param({ "1000", "5000" })
+    public int days;
+
+    private final DaySet daySet = new DaySet();
+
+    private final Set<Integer> boxedSet = new HashSet<Integer>();
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < days; i++) {
+            int day = FIRST_DAY + random.nextInt(days * 4);
+            daySet.add(day);
+            boxedSet.add(day);
+        }
+    }
+
+    @Benchmark
+    public int daySetMonth() {
+        int first = nextMonthStart();
+        int found = 0;
+        for (int day = first; day < first + 42; day++) {
+            if (daySet.contains(day)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int boxedSetMonth() {
+        int first = nextMonthStart();
+        int found = 0;
+        for (int day = first; day < first + 42; day++) {
+            if (boxedSet.contains(day)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private int nextMonthStart() {
+        return FIRST_DAY + (next++ % (days * 4 / 30 + 1)) * 30;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.benchmarks;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per date validation checks with a varying amount of disabled
+ * dates. Every other disabled date is a day apart so the probed dates hit
+ * both disabled and enabled days.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisabledDatesBenchmark {
+
+    /**
+     * The amount of disabled dates
+     */
+    @Param({ "0", "100", "10000" })
+    public int disabledDates;
+
+    private BenchmarkCalendar calendar;
+
+    private Date[] probes;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        calendar = new BenchmarkCalendar();
+        calendar.setDisabledDates(BenchmarkCalendar.days(1990,
+                Calendar.JANUARY, 1, disabledDates, 2));
+        calendar.setStartDate(BenchmarkCalendar.days(1990, Calendar.JANUARY,
+                1, 1, 1)[0]);
+        calendar.setEndDate(BenchmarkCalendar.days(2050, Calendar.JANUARY, 1,
+                1, 1)[0]);
+
+        // Consecutive days spread over the disabled range
+        probes = new Date[64];
+        int span = Math.max(disabledDates * 2, probes.length);
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = BenchmarkCalendar.days(1990, Calendar.JANUARY, 1
+                    + i * span / probes.length + (i & 1), 1, 1)[0];
+        }
+    }
+
+    @Benchmark
+    public boolean isDateDisabled() {
+        return calendar.isDateDisabled(probes[next++ & 63]);
+    }
+
+    @Benchmark
+    public boolean isDateInRange() {
+        return calendar.isDateInRange(probes[next++ & 63]);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.benchmarks;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.jasoft.simplecalendar.shared.LocalDateUtil;
+
+/**
+ * Measures the date arithmetic the widget runs in the browser. The default
+ * time zone is set to the zone being measured, the dates start two days
+ * before the spring daylight saving transition of 2015 in Europe so that
+ * {@link LocalDateUtil#incrementDays(Date, int)} crosses it.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalDateBenchmark {
+
+    /**
+     * The default time zone
+     */
+    @Param({ "UTC", "Europe/Helsinki" })
+    public String timeZone;
+
+    /**
+     * The amount of days in a range
+     */
+    @Param({ "7", "365", "3650" })
+    public int rangeDays;
+
+    private TimeZone defaultTimeZone;
+
+    private Date start;
+
+    private Date end;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(timeZone));
+        start = BenchmarkCalendar.days(2015, Calendar.MARCH, 27, 1, 1)[0];
+        end = BenchmarkCalendar.days(2015, Calendar.MARCH, 27 + rangeDays, 1,
+                1)[0];
+    }
+
+    @TearDown
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Benchmark
+    public Date incrementDays() {
+        return LocalDateUtil.incrementDays(start, next++ & 7);
+    }
+
+    @Benchmark
+    public Date incrementDaysOverRange() {
+        return LocalDateUtil.incrementDays(start, rangeDays);
+    }
+
+    @Benchmark
+    public List<Date> getDatesBetween() {
+        return LocalDateUtil.getDatesBetween(start, end);
+    }
+
+    @Benchmark
+    public boolean dateEqualResolutionDay() {
+        return LocalDateUtil.dateEqualResolutionDay(start, end);
+    }
+}
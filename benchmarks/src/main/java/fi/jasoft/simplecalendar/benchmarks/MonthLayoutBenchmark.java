@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.jasoft.simplecalendar.shared.Day;
+import fi.jasoft.simplecalendar.shared.MonthLayout;
+
+/**
+ * Measures laying out the grid of a month the way the widget does on each
+ * render, for consecutive months over a century.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonthLayoutBenchmark {
+
+    private static final int FIRST_MONTH = Day.getMonthKey(1950, 0);
+
+    private int next;
+
+    @Benchmark
+    public int layoutMonth() {
+        int monthKey = FIRST_MONTH + next++ % 1200;
+        MonthLayout layout = new MonthLayout(Day.getYearOfMonthKey(monthKey),
+                Day.getMonthOfMonthKey(monthKey), next & 1);
+
+        // Classify the cells like the widget does when styling them
+        int flags = 0;
+        for (int week = 0; week < MonthLayout.WEEKS; week++) {
+            for (int dayOfWeek = 0; dayOfWeek < 7; dayOfWeek++) {
+                int day = layout.getDay(week, dayOfWeek);
+                if (layout.isPreviousMonth(day)) {
+                    flags += 1;
+                } else if (layout.isNextMonth(day)) {
+                    flags += 2;
+                } else {
+                    flags += Day.getDayOfMonth(day);
+                }
+            }
+        }
+        return flags + layout.getLastDayOfPreviousYear()
+                + layout.getFirstDayOfNextYear();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.jasoft.simplecalendar.shared.Weekday;
+
+/**
+ * Measures {@link fi.jasoft.simplecalendar.SimpleCalendar#setValue(Object)}
+ * in single and multiselect mode. The calendar disables weekends and a
+ * hundred dates so that validation has rules to check.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetValueBenchmark {
+
+    /**
+     * The amount of dates selected in multiselect mode
+     */
+    @Param({ "1", "31", "365" })
+    public int selectionSize;
+
+    private BenchmarkCalendar single;
+
+    private BenchmarkCalendar multi;
+
+    private Date[] singleValues;
+
+    private List<Set<Date>> multiValues;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        Date[] disabled = BenchmarkCalendar.days(2014, Calendar.JANUARY, 3,
+                100, 7);
+
+        single = new BenchmarkCalendar();
+        single.setDisabledWeekDays(Weekday.SATURDAY, Weekday.SUNDAY);
+        single.setDisabledDates(disabled);
+
+        multi = new BenchmarkCalendar();
+        multi.setMultiSelect(true);
+        multi.setDisabledWeekDays(Weekday.SATURDAY, Weekday.SUNDAY);
+        multi.setDisabledDates(disabled);
+
+        // Mondays are never disabled, alternate between values so that each
+        // call is a real change
+        singleValues = BenchmarkCalendar.days(2014, Calendar.JANUARY, 6, 64,
+                7);
+        multiValues = new ArrayList<Set<Date>>();
+        for (int i = 0; i < 2; i++) {
+            Date[] dates = BenchmarkCalendar.days(2014 + i, Calendar.JANUARY,
+                    6, selectionSize, 7);
+            multiValues.add(new HashSet<Date>(Arrays.asList(dates)));
+        }
+    }
+
+    @Benchmark
+    public Object singleSelect() {
+        single.setValue(singleValues[next++ & 63]);
+        return single.getValue();
+    }
+
+    @Benchmark
+    public Object multiSelect() {
+        multi.setValue(multiValues.get(next++ & 1));
+        return multi.getValue();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.benchmarks;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vaadin.server.EncodeResult;
+import com.vaadin.server.JsonCodec;
+
+import elemental.json.JsonValue;
+import fi.jasoft.simplecalendar.shared.SimpleCalendarState;
+import fi.jasoft.simplecalendar.shared.Weekday;
+
+/**
+ * Measures encoding {@link SimpleCalendarState} to JSON the way the
+ * framework does it for a response, both the initial response which is a diff
+ * against the default state and a later response where nothing has changed.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateSerializationBenchmark {
+
+    /**
+     * The amount of disabled dates in the state
+     */
+    @Param({ "0", "100", "10000" })
+    public int disabledDates;
+
+    private SimpleCalendarState state;
+
+    private JsonValue defaultState;
+
+    private JsonValue previousState;
+
+    @Setup
+    public void setup() {
+        BenchmarkCalendar calendar = new BenchmarkCalendar();
+        calendar.setMultiSelect(true);
+        calendar.setDisabledWeekDays(Weekday.SATURDAY, Weekday.SUNDAY);
+        calendar.setDisabledMonthlyDates(1, 15);
+        calendar.setDisabledDates(BenchmarkCalendar.days(2000,
+                Calendar.JANUARY, 1, disabledDates, 2));
+        state = calendar.getState(false);
+
+        defaultState = JsonCodec.encode(new SimpleCalendarState(), null,
+                SimpleCalendarState.class, null).getEncodedValue();
+        previousState = encode(defaultState).getEncodedValue();
+    }
+
+    @Benchmark
+    public String initialResponse() {
+        return encode(defaultState).getDiff().toJson();
+    }
+
+    @Benchmark
+    public Object unchangedResponse() {
+        return encode(previousState).getDiff();
+    }
+
+    private EncodeResult encode(JsonValue diffState) {
+        return JsonCodec.encode(state, diffState, SimpleCalendarState.class,
+                null);
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.vaadin.server.ServerRpcManager;
+import com.vaadin.server.ServerRpcManager.RpcInvocationException;
+import com.vaadin.server.ServerRpcMethodInvocation;
+
+import fi.jasoft.simplecalendar.CalendarRules;
+import fi.jasoft.simplecalendar.SimpleCalendar;
+import fi.jasoft.simplecalendar.shared.DateValueChangeRpc;
+import fi.jasoft.simplecalendar.shared.Day;
+import fi.jasoft.simplecalendar.shared.RecurrenceRule;
+import fi.jasoft.simplecalendar.shared.Weekday;
+
+/**
+ * Creates sessions with calendars configured like a booking application and
+ * drives selection RPC calls against them without a browser. Reports the
+ * retained heap per calendar, the allocation and CPU time per interaction
+ * and the throughput with concurrent threads.
+ * <p>
+ * Arguments are given as key=value pairs:
+ * <ul>
+ * <li>sessions - the amount of sessions, default 1000</li>
+ * <li>calendars - the amount of calendars per session, default 2</li>
+ * <li>threads - the amount of concurrent threads, default the amount of
+ * processors</li>
+ * <li>interactions - the amount of interactions per thread, default
+ * 100000</li>
+ * </ul>
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+public class CalendarLoadTest {
+
+    /**
+     * The simulated client of a calendar
+     */
+    private static class Client {
+
+        private final LoadTestSession session;
+
+        private final SimpleCalendar calendar;
+
+        // The sequence number of the next selection change
+        private int sequence = 0;
+
+        private boolean initial = true;
+
+        Client(LoadTestSession session, SimpleCalendar calendar) {
+            this.session = session;
+            this.calendar = calendar;
+        }
+    }
+
+    private final int sessions;
+
+    private final int calendarsPerSession;
+
+    private final int threads;
+
+    private final int interactions;
+
+    private final List<Client> clients = new ArrayList<Client>();
+
+    // Mondays to Thursdays, which are never disabled
+    private final Date[] selectableDates;
+
+    private final Map<String, String> results = new LinkedHashMap<String, String>();
+
+    public CalendarLoadTest(int sessions, int calendarsPerSession,
+            int threads, int interactions) {
+        this.sessions = sessions;
+        this.calendarsPerSession = calendarsPerSession;
+        this.threads = threads;
+        this.interactions = interactions;
+
+        selectableDates = new Date[4 * 52];
+        int monday = Day.toEpochDay(2014, Calendar.JANUARY, 6);
+        for (int i = 0; i < selectableDates.length; i++) {
+            selectableDates[i] = Day.toLocalDate(monday + i / 4 * 7 + i % 4);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Integer> options = new LinkedHashMap<String, Integer>();
+        options.put("sessions", 1000);
+        options.put("calendars", 2);
+        options.put("threads", Runtime.getRuntime().availableProcessors());
+        options.put("interactions", 100000);
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !options.containsKey(option[0])) {
+                throw new IllegalArgumentException("Unknown option " + arg
+                        + ", options are " + options.keySet());
+            }
+            options.put(option[0], Integer.valueOf(option[1]));
+        }
+
+        CalendarLoadTest test = new CalendarLoadTest(options.get("sessions"),
+                options.get("calendars"), options.get("threads"),
+                options.get("interactions"));
+        test.run();
+        for (Map.Entry<String, String> result : test.results.entrySet()) {
+            System.out.println(result.getKey() + ": " + result.getValue());
+        }
+    }
+
+    /**
+     * Runs the test
+     */
+    public void run() throws Exception {
+        results.put("sessions", String.valueOf(sessions));
+        results.put("calendars", String.valueOf(sessions * calendarsPerSession));
+        results.put("threads", String.valueOf(threads));
+
+        measureRetainedHeap();
+
+        // Warm up before measuring a single thread
+        runInteractions(clients, interactions, 1);
+        measureInteractions();
+
+        measureThroughput();
+    }
+
+    private void measureRetainedHeap() {
+        CalendarRules holidays = createHolidays();
+        long before = getUsedHeap();
+        for (int i = 0; i < sessions; i++) {
+            LoadTestSession session = new LoadTestSession();
+            List<SimpleCalendar> calendars = new ArrayList<SimpleCalendar>();
+            for (int j = 0; j < calendarsPerSession; j++) {
+                calendars.add(createCalendar(holidays, i));
+            }
+            new LoadTestUI(session, calendars);
+            for (SimpleCalendar calendar : calendars) {
+                clients.add(new Client(session, calendar));
+            }
+        }
+
+        // Send the initial state so that the diff state is retained as well
+        for (Client client : clients) {
+            client.session.lock();
+            try {
+                respond(client);
+            } finally {
+                client.session.unlock();
+            }
+        }
+        long after = getUsedHeap();
+        results.put("retained bytes per session",
+                String.valueOf((after - before) / sessions));
+        results.put("retained bytes per calendar",
+                String.valueOf((after - before) / clients.size()));
+    }
+
+    private void measureInteractions() throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = getAllocatedBytes();
+        long cpuBefore = threadBean.isCurrentThreadCpuTimeSupported() ? threadBean
+                .getCurrentThreadCpuTime() : -1;
+
+        runInteractions(clients, interactions, 2);
+
+        long allocated = getAllocatedBytes() - allocatedBefore;
+        results.put("allocated bytes per interaction",
+                allocatedBefore < 0 ? "not supported" : String
+                        .valueOf(allocated / interactions));
+        if (cpuBefore >= 0) {
+            long cpu = threadBean.getCurrentThreadCpuTime() - cpuBefore;
+            results.put("cpu microseconds per interaction",
+                    String.format("%.2f", cpu / 1000.0 / interactions));
+        }
+    }
+
+    private void measureThroughput() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < threads; i++) {
+                final int seed = 3 + i;
+                tasks.add(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        runInteractions(clients, interactions, seed);
+                        return null;
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                // Rethrows any failure
+                result.get();
+            }
+            long nanos = System.nanoTime() - start;
+            results.put("interactions per second", String.valueOf((long) (threads
+                    * (double) interactions / nanos * 1000000000L)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Runs interactions with randomly chosen calendars. Each interaction is
+     * an RPC call followed by a response.
+     */
+    private void runInteractions(List<Client> clients, int count, long seed)
+            throws RpcInvocationException {
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            Client client = clients.get(random.nextInt(clients.size()));
+            client.session.lock();
+            try {
+                interact(client, random);
+                respond(client);
+            } finally {
+                client.session.unlock();
+            }
+        }
+    }
+
+    /**
+     * Calls the server RPC of a calendar like a user would: mostly single
+     * clicks, sometimes a range or a complete selection
+     */
+    private void interact(Client client, Random random)
+            throws RpcInvocationException {
+        int action = random.nextInt(10);
+        if (action == 0) {
+            Set<Date> dates = new HashSet<Date>();
+            for (int i = 0; i < 5; i++) {
+                dates.add(randomDate(random));
+            }
+            invoke(client, "selected", dates);
+            client.sequence = 0;
+        } else if (action == 1) {
+            Date start = randomDate(random);
+            invoke(client, "rangeSelected", start, new Date(start.getTime()
+                    + 14 * Day.MILLIS_PER_DAY));
+            client.sequence = 0;
+        } else {
+            Set<Date> added = Collections.singleton(randomDate(random));
+            Set<Date> removed = action < 4 ? Collections
+                    .singleton(randomDate(random)) : Collections
+                    .<Date> emptySet();
+            invoke(client, "changed", ++client.sequence, added, removed);
+        }
+    }
+
+    private void invoke(Client client, String method, Object... parameters)
+            throws RpcInvocationException {
+        ServerRpcMethodInvocation invocation = new ServerRpcMethodInvocation(
+                client.calendar.getConnectorId(), DateValueChangeRpc.class,
+                method, parameters.length);
+        invocation.setParameters(parameters);
+        ServerRpcManager.applyInvocation(client.calendar, invocation);
+    }
+
+    /**
+     * Does what the framework does for a calendar when writing a response
+     */
+    private void respond(Client client) {
+        client.calendar.beforeClientResponse(client.initial);
+        client.calendar.encodeState();
+        client.calendar.retrievePendingRpcCalls();
+        client.initial = false;
+    }
+
+    private Date randomDate(Random random) {
+        return selectableDates[random.nextInt(selectableDates.length)];
+    }
+
+    /**
+     * Returns public holidays shared by all calendars
+     */
+    private static CalendarRules createHolidays() {
+        CalendarRules.Builder builder = CalendarRules.builder();
+        builder.disableWeekdays(Weekday.SATURDAY, Weekday.SUNDAY);
+        for (int year = 2010; year < 2030; year++) {
+            for (int month = 0; month < 12; month += 3) {
+                builder.disableDates(Day.toLocalDate(Day.toEpochDay(year,
+                        month, 1)));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a calendar configured like a booking calendar of a resource
+     */
+    private static SimpleCalendar createCalendar(CalendarRules holidays,
+            int resource) {
+        SimpleCalendar calendar = new SimpleCalendar();
+        calendar.setImmediate(true);
+        calendar.setMultiSelect(true);
+        calendar.setRangeCompressedValue(true);
+        calendar.setCalendarRules(holidays);
+        calendar.setDisabledRecurrenceRules(RecurrenceRule
+                .lastWeekdayOfMonth(Weekday.FRIDAY));
+        calendar.setStartDate(Day.toLocalDate(Day.toEpochDay(2014,
+                Calendar.JANUARY, 1)));
+        calendar.setEndDate(Day.toLocalDate(Day.toEpochDay(2015,
+                Calendar.DECEMBER, 31)));
+
+        // Fridays already booked for this resource
+        Date[] booked = new Date[20];
+        int friday = Day.toEpochDay(2014, Calendar.JANUARY, 3) + resource % 7
+                * 7;
+        for (int i = 0; i < booked.length; i++) {
+            booked[i] = Day.toLocalDate(friday + i * 14);
+        }
+        calendar.setDisabledDates(booked);
+        return calendar;
+    }
+
+    private static long getUsedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // Collect until the used heap settles
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long current = memory.getHeapMemoryUsage().getUsed();
+            if (current >= used) {
+                return current;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread or -1 if the JVM does
+     * not support measuring it
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threadBean;
+            if (hotspot.isThreadAllocatedMemorySupported()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread()
+                        .getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.loadtest;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.VaadinSession;
+
+/**
+ * A session without a servlet or service. It has its own lock and generates
+ * connector ids itself.
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public class LoadTestSession extends VaadinSession {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int connectorId = 0;
+
+    public LoadTestSession() {
+        super(null);
+    }
+
+    @Override
+    public Lock getLockInstance() {
+        return lock;
+    }
+
+    @Override
+    public boolean hasLock() {
+        return lock.isHeldByCurrentThread();
+    }
+
+    @Override
+    public void lock() {
+        lock.lock();
+    }
+
+    @Override
+    public void unlock() {
+        // There is no service to run pending access tasks
+        lock.unlock();
+    }
+
+    @Override
+    public String createConnectorId(ClientConnector connector) {
+        return String.valueOf(connectorId++);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 John Ahlroos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.jasoft.simplecalendar.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+
+import fi.jasoft.simplecalendar.SimpleCalendar;
+
+/**
+ * A UI containing calendars, attached to a {@link LoadTestSession} without a
+ * request
+ *
+ * @author John Ahlroos (www.jasoft.fi)
+ *
+ */
+@SuppressWarnings("serial")
+public class LoadTestUI extends UI {
+
+    private final List<SimpleCalendar> calendars = new ArrayList<SimpleCalendar>();
+
+    /**
+     * Creates a UI and attaches it to a session
+     *
+     * @param session
+     *            The session
+     * @param calendars
+     *            The calendars of the UI
+     */
+    public LoadTestUI(LoadTestSession session, List<SimpleCalendar> calendars) {
+        VerticalLayout content = new VerticalLayout();
+        for (SimpleCalendar calendar : calendars) {
+            content.addComponent(calendar);
+            this.calendars.add(calendar);
+        }
+        setContent(content);
+
+        session.lock();
+        try {
+            setSession(session);
+        } finally {
+            session.unlock();
+        }
+    }
+
+    @Override
+    protected void init(VaadinRequest request) {
+        // Created without a request
+    }
+
+    /**
+     * Returns the calendars of the UI
+     */
+    public List<SimpleCalendar> getCalendars() {
+        return Collections.unmodifiableList(calendars);
+    }
+}